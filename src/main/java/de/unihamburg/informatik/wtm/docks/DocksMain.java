@@ -29,6 +29,7 @@ public class DocksMain {
 
     private static final String OPTION_HELP = "help";
     private static final String OPTION_SOCKET = "socket";
+    private static final String OPTION_WARM_UP = "warmup";
 
     private static final Logger LOG = LoggerFactory.getLogger(DocksMain.class);
 
@@ -45,6 +46,11 @@ public class DocksMain {
                 .hasOptionalArgs(1).withArgName("port").create(OPTION_SOCKET);
         options.addOption(optionSocket);
 
+        Option optionWarmUp = OptionBuilder
+                .withDescription("file of example socket requests run before the first request")
+                .hasArg().withArgName("file").create(OPTION_WARM_UP);
+        options.addOption(optionWarmUp);
+
         CommandLineParser parser = new BasicParser();
         try {
             CommandLine cmd = parser.parse(options, args);
@@ -58,7 +64,12 @@ public class DocksMain {
             }
 
             if (cmd.hasOption(OPTION_SOCKET)) {
-                SocketPostProcessor.main(cmd.getOptionValues(OPTION_SOCKET));
+                String[] socketArgs = cmd.getOptionValues(OPTION_SOCKET);
+                if (cmd.hasOption(OPTION_WARM_UP)) {
+                    String port = socketArgs != null && socketArgs.length > 0 ? socketArgs[0] : String.valueOf(SocketPostProcessor.PORT);
+                    socketArgs = new String[]{port, cmd.getOptionValue(OPTION_WARM_UP)};
+                }
+                SocketPostProcessor.main(socketArgs);
             }
 
         } catch (ParseException e) {
@@ -24,6 +24,9 @@ package de.unihamburg.informatik.wtm.docks;
 import java.io.Console;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -46,6 +49,8 @@ import de.unihamburg.informatik.wtm.docks.recognizer.RawGoogleRecognizer;
 import de.unihamburg.informatik.wtm.docks.recognizer.SphinxRecognizer;
 
 import de.unihamburg.informatik.wtm.docks.utils.ExampleChooser;
+import de.unihamburg.informatik.wtm.docks.utils.Startup;
+import de.unihamburg.informatik.wtm.docks.utils.TextNormalizer;
 import org.apache.log4j.BasicConfigurator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -71,11 +76,7 @@ class Example {
                                  WordlistPostProcessor wordlist) {
 
         // clean the sentences from special chars
-        sentence = sentence.replaceAll("[^a-zA-Z 0-9;]", "");
-        sentence = sentence.replaceAll(" +", " ");
-        if (!sentence.equals("") && sentence.charAt(0) == ' ') {
-            sentence = sentence.substring(1);
-        }
+        sentence = TextNormalizer.clean(sentence, true);
 
         LOG.info(sentence);
 
@@ -199,36 +200,89 @@ class Example {
         //String configname = "wtm_experiment";
         String configname = "config/elpmaxe/elpmaxe";
 
-        // initialize some recognizers
+        // initialize some recognizers in parallel
+        final String config = configname;
+        Startup startup = new Startup();
+
+        // warm up the post processors with typical hypotheses
+        try {
+            startup.setWarmUpCorpus(config + ".warmup.txt", 3);
+        } catch (IOException e) {
+            LOG.warn("failed to read warm-up corpus, error: {}", e.getMessage());
+        }
+
         LOG.info("Starting Raw Google");
         RawGoogleRecognizer rawGoogle = new RawGoogleRecognizer(key);
 
         LOG.info("Starting Google+Sentencelist");
-        SentencelistPostProcessor sentencelist = new SentencelistPostProcessor(
-                configname + ".sentences", 1);
+        Future<SentencelistPostProcessor> sentencelist = startup.loadPostProcessor("Google+Sentencelist",
+                new Callable<SentencelistPostProcessor>() {
+                    @Override
+                    public SentencelistPostProcessor call() {
+                        return new SentencelistPostProcessor(config + ".sentences", 1);
+                    }
+                });
 
         LOG.info("Starting Sphinx N-Gram");
-        SphinxRecognizer sphinxNGram = new SphinxRecognizer(configname
-                + ".ngram.xml");
+        Future<SphinxRecognizer> sphinxNGram = startup.load("Sphinx N-Gram", new Callable<SphinxRecognizer>() {
+            @Override
+            public SphinxRecognizer call() {
+                return new SphinxRecognizer(config + ".ngram.xml");
+            }
+        });
 
         LOG.info("Starting Sphinx Sentences");
-        SphinxRecognizer sphinxSentences = new SphinxRecognizer(configname
-                + ".fsgsentences.xml");
+        Future<SphinxRecognizer> sphinxSentences = startup.load("Sphinx Sentences", new Callable<SphinxRecognizer>() {
+            @Override
+            public SphinxRecognizer call() {
+                return new SphinxRecognizer(config + ".fsgsentences.xml");
+            }
+        });
 
         LOG.info("Starting Google+Sphinx N-Gram");
-        final SphinxBasedPostProcessor sphinxPostProcessorBigram = new SphinxBasedPostProcessor(
-                configname + ".pngram.xml", configname + ".words", 0, 0, 0);
+        Future<SphinxBasedPostProcessor> sphinxPostProcessorBigram = startup.loadPostProcessor(
+                "Google+Sphinx N-Gram", new Callable<SphinxBasedPostProcessor>() {
+                    @Override
+                    public SphinxBasedPostProcessor call() {
+                        return new SphinxBasedPostProcessor(config + ".pngram.xml", config + ".words", 0, 0, 0);
+                    }
+                });
 
         LOG.info("Starting Google+Sphinx Unigram");
-        final SphinxBasedPostProcessor sphinxPostProcessorUnigram = new SphinxBasedPostProcessor(
-                configname + ".punigram.xml", configname + ".words", 0, 0, 0);
+        Future<SphinxBasedPostProcessor> sphinxPostProcessorUnigram = startup.loadPostProcessor(
+                "Google+Sphinx Unigram", new Callable<SphinxBasedPostProcessor>() {
+                    @Override
+                    public SphinxBasedPostProcessor call() {
+                        return new SphinxBasedPostProcessor(config + ".punigram.xml", config + ".words", 0, 0, 0);
+                    }
+                });
 
         LOG.info("Starting Google+Sphinx Sentences");
-        final SphinxBasedPostProcessor sphinxPostProcessorSentences = new SphinxBasedPostProcessor(
-                configname + ".pgrammarsentences.xml", configname + ".words", 0, 0, 0);
+        Future<SphinxBasedPostProcessor> sphinxPostProcessorSentences = startup.loadPostProcessor(
+                "Google+Sphinx Sentences", new Callable<SphinxBasedPostProcessor>() {
+                    @Override
+                    public SphinxBasedPostProcessor call() {
+                        return new SphinxBasedPostProcessor(config + ".pgrammarsentences.xml", config + ".words", 0, 0, 0);
+                    }
+                });
 
         LOG.info("Starting Google+Wordlist");
-        WordlistPostProcessor wordlist = new WordlistPostProcessor(configname + ".words");
+        Future<WordlistPostProcessor> wordlist = startup.loadPostProcessor("Google+Wordlist",
+                new Callable<WordlistPostProcessor>() {
+                    @Override
+                    public WordlistPostProcessor call() {
+                        return new WordlistPostProcessor(config + ".words");
+                    }
+                });
+
+        try {
+            startup.awaitReady(10, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        LOG.info("components: {}", startup.getStatus());
+        startup.shutdown();
 
         // a testfile
         String filename = "data/back_fs_1387386033021_m1.wav";
@@ -237,38 +291,38 @@ class Example {
         // play sound before recognition
         playSound(filename);
         // recognize
-        testFile(filename, sentence, rawGoogle, sentencelist,
-                sphinxNGram, sphinxSentences, sphinxPostProcessorBigram,
-                sphinxPostProcessorUnigram, sphinxPostProcessorSentences,
-                wordlist);
+        testFile(filename, sentence, rawGoogle, Startup.get(sentencelist),
+                Startup.get(sphinxNGram), Startup.get(sphinxSentences), Startup.get(sphinxPostProcessorBigram),
+                Startup.get(sphinxPostProcessorUnigram), Startup.get(sphinxPostProcessorSentences),
+                Startup.get(wordlist));
 
         waitForEnter();
 
         filename = "data/front_fs_1387379085134_m1.wav";
         sentence = "the door is in front of you";
         playSound(filename);
-        testFile(filename, sentence, rawGoogle, sentencelist,
-                sphinxNGram, sphinxSentences, sphinxPostProcessorBigram,
-                sphinxPostProcessorUnigram, sphinxPostProcessorSentences,
-                wordlist);
+        testFile(filename, sentence, rawGoogle, Startup.get(sentencelist),
+                Startup.get(sphinxNGram), Startup.get(sphinxSentences), Startup.get(sphinxPostProcessorBigram),
+                Startup.get(sphinxPostProcessorUnigram), Startup.get(sphinxPostProcessorSentences),
+                Startup.get(wordlist));
         waitForEnter();
         filename = "data/home_fs_1387379071054_m1.wav";
 
         sentence = "the kitchen is at home";
         playSound(filename);
-        testFile(filename, sentence, rawGoogle, sentencelist,
-                sphinxNGram, sphinxSentences, sphinxPostProcessorBigram,
-                sphinxPostProcessorUnigram, sphinxPostProcessorSentences,
-                wordlist);
+        testFile(filename, sentence, rawGoogle, Startup.get(sentencelist),
+                Startup.get(sphinxNGram), Startup.get(sphinxSentences), Startup.get(sphinxPostProcessorBigram),
+                Startup.get(sphinxPostProcessorUnigram), Startup.get(sphinxPostProcessorSentences),
+                Startup.get(wordlist));
         waitForEnter();
 
         filename = "data/show_fs_1387385878857_m1.wav";
         sentence = "robot show me the pen";
         playSound(filename);
-        testFile(filename, sentence, rawGoogle, sentencelist,
-                sphinxNGram, sphinxSentences, sphinxPostProcessorBigram,
-                sphinxPostProcessorUnigram, sphinxPostProcessorSentences,
-                wordlist);
+        testFile(filename, sentence, rawGoogle, Startup.get(sentencelist),
+                Startup.get(sphinxNGram), Startup.get(sphinxSentences), Startup.get(sphinxPostProcessorBigram),
+                Startup.get(sphinxPostProcessorUnigram), Startup.get(sphinxPostProcessorSentences),
+                Startup.get(wordlist));
     }
 
     public static void exampleLive(String key) {
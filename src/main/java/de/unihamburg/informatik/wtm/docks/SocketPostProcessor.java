@@ -22,7 +22,9 @@
 package de.unihamburg.informatik.wtm.docks;
 
 import de.unihamburg.informatik.wtm.docks.data.Result;
+import de.unihamburg.informatik.wtm.docks.phoneme.PhonemeCreator;
 import de.unihamburg.informatik.wtm.docks.postprocessor.SentencelistPostProcessor;
+import de.unihamburg.informatik.wtm.docks.utils.Startup;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +35,7 @@ import java.net.Socket;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
 
 public class SocketPostProcessor {
 
@@ -56,6 +59,7 @@ public class SocketPostProcessor {
      *
      * @param args optional params
      *             args[0] overrides the default socket port (54015)
+     *             args[1] file of example requests (one per line) used to warm up before the first request
      */
     public static void main(String[] args) {
         int port = PORT;
@@ -67,6 +71,25 @@ public class SocketPostProcessor {
             }
         }
 
+        // load the G2P model and warm up while the socket is opened
+        Startup startup = new Startup(1);
+        startup.load("G2P", new Callable<PhonemeCreator>() {
+            @Override
+            public PhonemeCreator call() {
+                return PhonemeCreator.getInstance();
+            }
+        });
+        if (args != null && args.length > 1) {
+            final String warmUpFile = args[1];
+            startup.load("warm-up", new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    return warmUp(warmUpFile);
+                }
+            });
+        }
+        startup.shutdown();
+
         ServerSocket listener = null;
         Socket socket = null;
         BufferedReader in = null;
@@ -83,17 +106,7 @@ public class SocketPostProcessor {
                 String requestString = in.readLine();
                 LOG.debug("request: {}", requestString);
 
-                List<String> expectedResults = parseExpectedSentences(requestString);
-                Result googleResult = parseGoogleResult(requestString);
-
-                SentencelistPostProcessor sp = new SentencelistPostProcessor(expectedResults, 1);
-                Result r = sp.recognizeFromResult(googleResult);
-
-                String bestResult = r.getRawResult();
-                String confidence = String.format(Locale.US, "%.02f", r.getConfidence());
-
-                LOG.debug("returning best result: {}, with confidence: {}", bestResult, confidence);
-                out.println(bestResult + "===" + confidence);
+                out.println(process(requestString));
             }
         } catch (Exception e) {
             LOG.error("error: ", e.getMessage());
@@ -105,6 +118,39 @@ public class SocketPostProcessor {
         }
     }
 
+    private static String process(String requestString) {
+        List<String> expectedResults = parseExpectedSentences(requestString);
+        Result googleResult = parseGoogleResult(requestString);
+
+        SentencelistPostProcessor sp = new SentencelistPostProcessor(expectedResults, 1);
+        Result r = sp.recognizeFromResult(googleResult);
+
+        String bestResult = r.getRawResult();
+        String confidence = String.format(Locale.US, "%.02f", r.getConfidence());
+
+        LOG.debug("returning best result: {}, with confidence: {}", bestResult, confidence);
+        return bestResult + "===" + confidence;
+    }
+
+    // runs the example requests of a file, returns their number
+    private static int warmUp(String file) throws IOException {
+        BufferedReader in = null;
+        int count = 0;
+        try {
+            in = new BufferedReader(new FileReader(file));
+            String requestString;
+            while ((requestString = in.readLine()) != null) {
+                if (requestString.contains("===")) {
+                    process(requestString);
+                    count++;
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return count;
+    }
+
     private static LinkedList<String> parseExpectedSentences(String socketRequest) {
         LinkedList<String> expectedSentences = new LinkedList<String>();
 
@@ -0,0 +1,126 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * confusion network of an utterance: a sequence of slots, each holding the competing words at this position
+ * with their posterior probabilities, most probable word first.
+ */
+public class ConfusionNetwork implements Serializable {
+
+    private static final long serialVersionUID = -5188023385641352170L;
+
+    /**
+     * word of a slot standing for no word
+     */
+    public static final String EPSILON = "";
+
+    private final List<String[]> words = new ArrayList<String[]>();
+    private final List<double[]> posteriors = new ArrayList<double[]>();
+
+    /**
+     * appends a slot
+     *
+     * @param slot words and their posterior probabilities
+     */
+    public void addSlot(Map<String, Double> slot) {
+        List<Map.Entry<String, Double>> entries = new ArrayList<Map.Entry<String, Double>>(slot.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Double>>() {
+            @Override
+            public int compare(Map.Entry<String, Double> e1, Map.Entry<String, Double> e2) {
+                return Double.compare(e2.getValue(), e1.getValue());
+            }
+        });
+        String[] w = new String[entries.size()];
+        double[] p = new double[entries.size()];
+        for (int i = 0; i < w.length; i++) {
+            w[i] = entries.get(i).getKey();
+            p[i] = entries.get(i).getValue();
+        }
+        words.add(w);
+        posteriors.add(p);
+    }
+
+    /**
+     * @return number of slots
+     */
+    public int size() {
+        return words.size();
+    }
+
+    /**
+     * @param slot index of the slot
+     * @return words of the slot, most probable first
+     */
+    public String[] getWords(int slot) {
+        return words.get(slot).clone();
+    }
+
+    /**
+     * @param slot index of the slot
+     * @return posterior probabilities of the words of the slot
+     */
+    public double[] getPosteriors(int slot) {
+        return posteriors.get(slot).clone();
+    }
+
+    /**
+     * @return the most probable word of every slot, separated by spaces
+     */
+    public String getBestHypothesis() {
+        StringBuilder sb = new StringBuilder();
+        for (String[] slot : words) {
+            if (slot.length == 0 || EPSILON.equals(slot[0])) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(slot[0]);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int s = 0; s < words.size(); s++) {
+            sb.append('[');
+            for (int i = 0; i < words.get(s).length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(EPSILON.equals(words.get(s)[i]) ? "-" : words.get(s)[i]);
+                sb.append(String.format(":%.2f", posteriors.get(s)[i]));
+            }
+            sb.append(']');
+        }
+        return sb.toString();
+    }
+}
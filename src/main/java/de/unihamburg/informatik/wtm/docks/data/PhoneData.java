@@ -21,6 +21,8 @@
  */
 package de.unihamburg.informatik.wtm.docks.data;
 
+import java.util.Arrays;
+
 import de.unihamburg.informatik.wtm.docks.phoneme.PhonemeSubstitution;
 
 import edu.cmu.sphinx.frontend.Data;
@@ -40,6 +42,12 @@ public class PhoneData implements Data {
     String phoneID;
     static LogMath logMath = LogMath.getInstance();
     int method;
+    // index into the score table of the substitution method
+    int phonemeId;
+    PhonemeSubstitution substitution;
+    // scores of this phoneme compared to every phoneme, read once per frame
+    // instead of once per scored search state
+    final float[] scores = new float[PhonemeSubstitution.NUMBER_OF_PHONEMES];
 
     /**
      * @param phoneID the phoneme representation
@@ -47,8 +55,33 @@ public class PhoneData implements Data {
      * @see de.unihamburg.informatik.wtm.docks.phoneme.PhonemeSubstitution
      */
     public PhoneData(String phoneID, int method) {
+        set(phoneID, method);
+    }
+
+    /**
+     * reuses the frame for another phoneme
+     *
+     * @param phoneID the phoneme representation
+     * @param method  the phoneme substitution method
+     */
+    public void set(String phoneID, int method) {
         this.phoneID = phoneID;
         this.method = method;
+        this.phonemeId = PhonemeSubstitution.getPhonemeId(phoneID);
+        this.substitution = PhonemeSubstitution.getInstance(method);
+        if (phonemeId < 0) {
+            // unknown phonemes match nothing
+            Arrays.fill(scores, LogMath.LOG_ZERO);
+        } else {
+            substitution.getLogScores(phonemeId, scores);
+        }
+    }
+
+    /**
+     * @return ID of the phoneme (see PhonemeSubstitution.getPhonemeId)
+     */
+    public int getPhonemeId() {
+        return phonemeId;
     }
 
     /**
@@ -59,7 +92,17 @@ public class PhoneData implements Data {
      * @return
      */
     public float getConfusionScore(String otherPhone, int numberOfTimesUsed) {
-        return logMath.linearToLog(PhonemeSubstitution.getInstance(method).getScore(phoneID, otherPhone));
+        return logMath.linearToLog(substitution.getScore(phoneID, otherPhone));
+    }
+
+    /**
+     * calculates score between two phonemes using the scores of this frame
+     *
+     * @param otherPhoneId ID of the other phoneme (see PhonemeSubstitution.getPhonemeId)
+     * @return the score in the log domain
+     */
+    public float getConfusionScore(int otherPhoneId) {
+        return scores[otherPhoneId];
     }
 
     @Override
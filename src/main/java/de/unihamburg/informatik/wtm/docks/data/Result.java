@@ -58,6 +58,9 @@ public class Result implements Serializable {
     private String hypPhoneme;
     private String refPhoneme;
 
+    private WordLattice lattice;
+    private ConfusionNetwork confusionNetwork;
+
     /**
      * @return phonemes of hypothesis
      */
@@ -174,6 +177,34 @@ public class Result implements Serializable {
         }
     }
 
+    /**
+     * @return word lattice of the utterance or null if it was not built
+     */
+    public WordLattice getLattice() {
+        return lattice;
+    }
+
+    /**
+     * @param lattice word lattice of the utterance
+     */
+    public void setLattice(WordLattice lattice) {
+        this.lattice = lattice;
+    }
+
+    /**
+     * @return confusion network of the utterance or null if it was not built
+     */
+    public ConfusionNetwork getConfusionNetwork() {
+        return confusionNetwork;
+    }
+
+    /**
+     * @param confusionNetwork confusion network of the utterance
+     */
+    public void setConfusionNetwork(ConfusionNetwork confusionNetwork) {
+        this.confusionNetwork = confusionNetwork;
+    }
+
     public String getRawResult() {
         return rawResult;
     }
@@ -0,0 +1,396 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * compact word lattice of an utterance.
+ * nodes are words with their begin and end frame, edges carry acoustic and language scores as natural logarithms.
+ * nodes need to be added in topological order, so n-best lists, posteriors and rescored paths are computed by
+ * single passes over the nodes. a lattice is built once per utterance and can be rescored with other
+ * language weights without decoding again.
+ */
+public class WordLattice implements Serializable {
+
+    private static final long serialVersionUID = 3862410273650891174L;
+
+    private String[] words = new String[16];
+    private boolean[] fillers = new boolean[16];
+    private int[] beginTimes = new int[16];
+    private int[] endTimes = new int[16];
+    private double[] posteriors = new double[16];
+    private int numberOfNodes;
+
+    private int[] edgeFrom = new int[16];
+    private int[] edgeTo = new int[16];
+    private double[] acousticScores = new double[16];
+    private double[] languageScores = new double[16];
+    private int numberOfEdges;
+
+    private int initialNode = -1;
+    private int terminalNode = -1;
+
+    /**
+     * adds a node after all of its predecessors
+     *
+     * @param word      spelling of the word
+     * @param filler    true if the word is a filler or sentence boundary, which is not part of the hypotheses
+     * @param beginTime first frame of the word
+     * @param endTime   last frame of the word
+     * @return index of the node
+     */
+    public int addNode(String word, boolean filler, int beginTime, int endTime) {
+        if (numberOfNodes == words.length) {
+            int capacity = numberOfNodes * 2;
+            words = Arrays.copyOf(words, capacity);
+            fillers = Arrays.copyOf(fillers, capacity);
+            beginTimes = Arrays.copyOf(beginTimes, capacity);
+            endTimes = Arrays.copyOf(endTimes, capacity);
+            posteriors = Arrays.copyOf(posteriors, capacity);
+        }
+        words[numberOfNodes] = word;
+        fillers[numberOfNodes] = filler;
+        beginTimes[numberOfNodes] = beginTime;
+        endTimes[numberOfNodes] = endTime;
+        return numberOfNodes++;
+    }
+
+    /**
+     * adds an edge
+     *
+     * @param from          index of the predecessor
+     * @param to            index of the successor, added after the predecessor
+     * @param acousticScore acoustic score as natural logarithm
+     * @param languageScore language score as natural logarithm
+     */
+    public void addEdge(int from, int to, double acousticScore, double languageScore) {
+        if (from >= to || to >= numberOfNodes) {
+            throw new IllegalArgumentException("edge " + from + " -> " + to + " is not in topological order");
+        }
+        if (numberOfEdges == edgeFrom.length) {
+            int capacity = numberOfEdges * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            acousticScores = Arrays.copyOf(acousticScores, capacity);
+            languageScores = Arrays.copyOf(languageScores, capacity);
+        }
+        edgeFrom[numberOfEdges] = from;
+        edgeTo[numberOfEdges] = to;
+        acousticScores[numberOfEdges] = acousticScore;
+        languageScores[numberOfEdges] = languageScore;
+        numberOfEdges++;
+    }
+
+    /**
+     * @param initialNode index of the first node of all paths
+     * @param terminalNode index of the last node of all paths
+     */
+    public void setBoundaries(int initialNode, int terminalNode) {
+        this.initialNode = initialNode;
+        this.terminalNode = terminalNode;
+    }
+
+    public int getNumberOfNodes() {
+        return numberOfNodes;
+    }
+
+    public int getNumberOfEdges() {
+        return numberOfEdges;
+    }
+
+    public String getWord(int node) {
+        return words[node];
+    }
+
+    public boolean isFiller(int node) {
+        return fillers[node];
+    }
+
+    public int getBeginTime(int node) {
+        return beginTimes[node];
+    }
+
+    public int getEndTime(int node) {
+        return endTimes[node];
+    }
+
+    /**
+     * @param node index of the node
+     * @return probability of the paths through the node, see {@link #computePosteriors(double)}
+     */
+    public double getPosterior(int node) {
+        return posteriors[node];
+    }
+
+    private double getScore(int edge, double languageWeight) {
+        return acousticScores[edge] + languageWeight * languageScores[edge];
+    }
+
+    private void checkBoundaries() {
+        if (initialNode < 0 || terminalNode < 0) {
+            throw new IllegalStateException("initial and terminal node are not set");
+        }
+    }
+
+    /**
+     * computes the posterior probability of every node by the forward-backward algorithm
+     *
+     * @param languageWeight factor of the language scores, 1 to score like the decoder
+     */
+    public void computePosteriors(double languageWeight) {
+        checkBoundaries();
+        double[] forward = new double[numberOfNodes];
+        double[] backward = new double[numberOfNodes];
+        Arrays.fill(forward, Double.NEGATIVE_INFINITY);
+        Arrays.fill(backward, Double.NEGATIVE_INFINITY);
+        forward[initialNode] = 0;
+        backward[terminalNode] = 0;
+
+        // nodes are in topological order, so all predecessors are done when a node is visited
+        int[][] entering = getEdges(true);
+        int[][] leaving = getEdges(false);
+        for (int node = 0; node < numberOfNodes; node++) {
+            for (int e : entering[node]) {
+                forward[node] = logAdd(forward[node], forward[edgeFrom[e]] + getScore(e, languageWeight));
+            }
+        }
+        for (int node = numberOfNodes - 1; node >= 0; node--) {
+            for (int e : leaving[node]) {
+                backward[node] = logAdd(backward[node], backward[edgeTo[e]] + getScore(e, languageWeight));
+            }
+        }
+        double total = forward[terminalNode];
+        for (int node = 0; node < numberOfNodes; node++) {
+            double posterior = Math.exp(forward[node] + backward[node] - total);
+            posteriors[node] = Double.isNaN(posterior) ? 0 : posterior;
+        }
+    }
+
+    private static double logAdd(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) {
+            return b;
+        }
+        if (b == Double.NEGATIVE_INFINITY) {
+            return a;
+        }
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(Math.min(a, b) - max));
+    }
+
+    // edge indices entering or leaving every node
+    private int[][] getEdges(boolean entering) {
+        int[] counts = new int[numberOfNodes];
+        int[] ends = entering ? edgeTo : edgeFrom;
+        for (int e = 0; e < numberOfEdges; e++) {
+            counts[ends[e]]++;
+        }
+        int[][] edges = new int[numberOfNodes][];
+        for (int node = 0; node < numberOfNodes; node++) {
+            edges[node] = new int[counts[node]];
+            counts[node] = 0;
+        }
+        for (int e = 0; e < numberOfEdges; e++) {
+            edges[ends[e]][counts[ends[e]]++] = e;
+        }
+        return edges;
+    }
+
+    /**
+     * @param n              maximal number of paths
+     * @param languageWeight factor of the language scores, 1 to score like the decoder
+     * @return the words of the best paths without fillers, separated by spaces. paths with equal words are
+     * listed once, so the list may be shorter than n
+     */
+    public List<String> getNbest(int n, double languageWeight) {
+        List<String> nbest = new ArrayList<String>();
+        Set<String> seen = new LinkedHashSet<String>();
+        for (int[] path : getBestPaths(n, languageWeight)) {
+            StringBuilder sb = new StringBuilder();
+            for (int node : path) {
+                if (!fillers[node]) {
+                    if (sb.length() > 0) {
+                        sb.append(' ');
+                    }
+                    sb.append(words[node]);
+                }
+            }
+            if (seen.add(sb.toString())) {
+                nbest.add(sb.toString());
+            }
+        }
+        return nbest;
+    }
+
+    /**
+     * finds the best paths from the initial to the terminal node
+     *
+     * @param n              maximal number of paths
+     * @param languageWeight factor of the language scores, 1 to score like the decoder
+     * @return the nodes of every path, best path first
+     */
+    public List<int[]> getBestPaths(int n, double languageWeight) {
+        checkBoundaries();
+        // the n best partial paths ending at every node, as (score, edge, rank at the predecessor)
+        double[][] scores = new double[numberOfNodes][];
+        int[][] edges = new int[numberOfNodes][];
+        int[][] ranks = new int[numberOfNodes][];
+        int[] sizes = new int[numberOfNodes];
+        for (int node = 0; node < numberOfNodes; node++) {
+            scores[node] = new double[n];
+            edges[node] = new int[n];
+            ranks[node] = new int[n];
+        }
+        scores[initialNode][0] = 0;
+        edges[initialNode][0] = -1;
+        sizes[initialNode] = 1;
+
+        int[][] entering = getEdges(true);
+        for (int node = 0; node < numberOfNodes; node++) {
+            for (int e : entering[node]) {
+                int from = edgeFrom[e];
+                for (int r = 0; r < sizes[from]; r++) {
+                    insert(scores[node], edges[node], ranks[node], sizes, node,
+                            scores[from][r] + getScore(e, languageWeight), e, r);
+                }
+            }
+        }
+
+        List<int[]> paths = new ArrayList<int[]>();
+        for (int r = 0; r < sizes[terminalNode]; r++) {
+            List<Integer> path = new ArrayList<Integer>();
+            int node = terminalNode;
+            int rank = r;
+            while (true) {
+                path.add(node);
+                int e = edges[node][rank];
+                if (e < 0) {
+                    break;
+                }
+                rank = ranks[node][rank];
+                node = edgeFrom[e];
+            }
+            int[] nodes = new int[path.size()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = path.get(nodes.length - 1 - i);
+            }
+            paths.add(nodes);
+        }
+        return paths;
+    }
+
+    // inserts a partial path into the sorted list of a node, dropping the worst one if the list is full
+    private static void insert(double[] scores, int[] edges, int[] ranks, int[] sizes, int node,
+                               double score, int edge, int rank) {
+        int size = sizes[node];
+        int n = scores.length;
+        if (size == n && score <= scores[n - 1]) {
+            return;
+        }
+        int i = size == n ? n - 1 : size;
+        while (i > 0 && scores[i - 1] < score) {
+            scores[i] = scores[i - 1];
+            edges[i] = edges[i - 1];
+            ranks[i] = ranks[i - 1];
+            i--;
+        }
+        scores[i] = score;
+        edges[i] = edge;
+        ranks[i] = rank;
+        if (size < n) {
+            sizes[node]++;
+        }
+    }
+
+    /**
+     * aligns the words of the lattice to the words of the best path. every word is assigned to the word of the
+     * best path it overlaps most in time, its posterior is added to that slot. the remaining probability of a slot
+     * is the probability of no word ({@link ConfusionNetwork#EPSILON}). several words of one path can be assigned to
+     * the same slot, slots with more than probability 1 are therefore normalized.
+     * call {@link #computePosteriors(double)} first.
+     *
+     * @param languageWeight factor of the language scores used to find the best path
+     * @return the confusion network
+     */
+    public ConfusionNetwork toConfusionNetwork(double languageWeight) {
+        List<int[]> best = getBestPaths(1, languageWeight);
+        List<Integer> pivots = new ArrayList<Integer>();
+        if (!best.isEmpty()) {
+            for (int node : best.get(0)) {
+                if (!fillers[node]) {
+                    pivots.add(node);
+                }
+            }
+        }
+
+        List<Map<String, Double>> slots = new ArrayList<Map<String, Double>>();
+        for (int i = 0; i < pivots.size(); i++) {
+            slots.add(new LinkedHashMap<String, Double>());
+        }
+        for (int node = 0; node < numberOfNodes; node++) {
+            if (fillers[node]) {
+                continue;
+            }
+            int slot = -1;
+            int maxOverlap = 0;
+            for (int i = 0; i < pivots.size(); i++) {
+                int pivot = pivots.get(i);
+                int overlap = Math.min(endTimes[node], endTimes[pivot])
+                        - Math.max(beginTimes[node], beginTimes[pivot]) + 1;
+                if (overlap > maxOverlap) {
+                    maxOverlap = overlap;
+                    slot = i;
+                }
+            }
+            if (slot >= 0) {
+                Map<String, Double> words = slots.get(slot);
+                Double sum = words.get(this.words[node]);
+                words.put(this.words[node], (sum == null ? 0 : sum) + posteriors[node]);
+            }
+        }
+
+        ConfusionNetwork network = new ConfusionNetwork();
+        for (Map<String, Double> words : slots) {
+            double sum = 0;
+            for (double posterior : words.values()) {
+                sum += posterior;
+            }
+            // ignore rounding errors of the posteriors
+            if (sum < 1 - 1E-9) {
+                words.put(ConfusionNetwork.EPSILON, 1 - sum);
+            } else if (sum > 1 + 1E-9) {
+                for (Map.Entry<String, Double> word : words.entrySet()) {
+                    word.setValue(word.getValue() / sum);
+                }
+            }
+            network.addSlot(words);
+        }
+        return network;
+    }
+}
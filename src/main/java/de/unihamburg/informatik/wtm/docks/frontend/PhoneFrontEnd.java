@@ -21,9 +21,6 @@
  */
 package de.unihamburg.informatik.wtm.docks.frontend;
 
-import java.util.LinkedList;
-import java.util.List;
-
 import de.unihamburg.informatik.wtm.docks.data.PhoneData;
 
 import edu.cmu.sphinx.frontend.Data;
@@ -40,13 +37,22 @@ import edu.cmu.sphinx.frontend.FrontEnd;
  */
 public class PhoneFrontEnd extends FrontEnd {
 
-    private List<Data> phones;
+    // frames added per utterance besides two per phoneme: start, 4 x SIL, end
+    private static final int FRAMES_PER_UTTERANCE = 6;
+
+    // ring buffer of queued frames
+    private Data[] phones;
+    // reusable frame of every slot of the ring buffer
+    private PhoneData[] frames;
+    private int head;
+    private int size;
     private int substitutionMethod;
 
 
     public PhoneFrontEnd() {
         super();
-        phones = new LinkedList<Data>();
+        phones = new Data[64];
+        frames = new PhoneData[phones.length];
     }
 
     /**
@@ -59,21 +65,71 @@ public class PhoneFrontEnd extends FrontEnd {
     }
 
     /**
-     * adds the phoneme sequence to the input
+     * @param numberOfPhonemes number of phonemes added by {@link #addPhonemes(String[])}
+     * @return number of frames scored for the phonemes
+     */
+    public static int getNumberOfFrames(int numberOfPhonemes) {
+        return 2 * numberOfPhonemes + 4;
+    }
+
+    /**
+     * adds the phoneme sequence to the input. the frames of the slots used are reused,
+     * so results of the previous utterance must not be used after calling this.
      *
      * @param phonemes phoneme sequence
      */
     public void addPhonemes(String[] phonemes) {
-        phones.add(new DataStartSignal(0));
-        phones.add(new PhoneData("SIL", substitutionMethod));
+        if (size == 0) {
+            // start at the first slot, so every utterance reuses the same frames
+            head = 0;
+        }
+        ensureCapacity(size + 2 * phonemes.length + FRAMES_PER_UTTERANCE);
+        add(new DataStartSignal(0));
+        addPhone("SIL");
         for (String p : phonemes) {
-            phones.add(new PhoneData(p, substitutionMethod));
-            phones.add(new PhoneData(p, substitutionMethod));
+            addPhone(p);
+            addPhone(p);
         }
-        phones.add(new PhoneData("SIL", substitutionMethod));
-        phones.add(new PhoneData("SIL", substitutionMethod));
-        phones.add(new PhoneData("SIL", substitutionMethod));
-        phones.add(new DataEndSignal(100));
+        addPhone("SIL");
+        addPhone("SIL");
+        addPhone("SIL");
+        add(new DataEndSignal(100));
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= phones.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, 2 * phones.length);
+        Data[] newPhones = new Data[newCapacity];
+        PhoneData[] newFrames = new PhoneData[newCapacity];
+        // queued frames move to the front, so they keep their slot and frame
+        for (int i = 0; i < phones.length; i++) {
+            int slot = (head + i) % phones.length;
+            newPhones[i] = phones[slot];
+            newFrames[i] = frames[slot];
+        }
+        phones = newPhones;
+        frames = newFrames;
+        head = 0;
+    }
+
+    private void addPhone(String phone) {
+        int slot = (head + size) % phones.length;
+        PhoneData frame = frames[slot];
+        if (frame == null) {
+            frame = new PhoneData(phone, substitutionMethod);
+            frames[slot] = frame;
+        } else {
+            frame.set(phone, substitutionMethod);
+        }
+        phones[slot] = frame;
+        size++;
+    }
+
+    private void add(Data data) {
+        phones[(head + size) % phones.length] = data;
+        size++;
     }
 
     /**
@@ -84,7 +140,13 @@ public class PhoneFrontEnd extends FrontEnd {
 
     @Override
     public Data getData() throws DataProcessingException {
-        Data d = phones.isEmpty() ? null : phones.remove(0);
+        if (size == 0) {
+            return null;
+        }
+        Data d = phones[head];
+        phones[head] = null;
+        head = (head + 1) % phones.length;
+        size--;
         return d;
     }
 
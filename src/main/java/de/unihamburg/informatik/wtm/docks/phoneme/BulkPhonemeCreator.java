@@ -0,0 +1,210 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.unihamburg.informatik.wtm.docks.utils.TextNormalizer;
+
+/**
+ * converts large lists of sentences or words to phonemes.
+ * every distinct word is converted only once by a pool of G2P workers while the
+ * input is still being read, the sentences are assembled in input order afterwards.
+ */
+public class BulkPhonemeCreator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkPhonemeCreator.class);
+
+    private final PhonemeCreator pc;
+    private final int numberOfThreads;
+
+    /**
+     * creates a bulk converter using one worker per available processor
+     *
+     * @param pc the phoneme creator used for the conversion of single words
+     */
+    public BulkPhonemeCreator(PhonemeCreator pc) {
+        this(pc, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param pc              the phoneme creator used for the conversion of single words
+     * @param numberOfThreads number of G2P workers
+     */
+    public BulkPhonemeCreator(PhonemeCreator pc, int numberOfThreads) {
+        this.pc = pc;
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+    }
+
+    /**
+     * creates the phonemes for a stream of raw sentences. sentences without any word are skipped.
+     *
+     * @param rawResults raw sentences, e.g. lines of a sentence file
+     * @return list of phonemes wrapped into a PhonemeContainer, in input order
+     */
+    public List<PhonemeContainer> getPhonemes(Iterator<String> rawResults) {
+        ExecutorService pool = newPool();
+        try {
+            Map<String, Future<String[]>> wordPhonemes = new HashMap<String, Future<String[]>>();
+            List<PhonemeContainer> containers = new ArrayList<PhonemeContainer>();
+
+            // fan out every new word as soon as it is read
+            while (rawResults.hasNext()) {
+                String rawResult = rawResults.next();
+                String[] words = TextNormalizer.toWords(rawResult);
+                if (words == null) {
+                    continue;
+                }
+                PhonemeContainer container = new PhonemeContainer(words);
+                container.internWords();
+                container.setRawResult(rawResult);
+                containers.add(container);
+
+                for (String word : words) {
+                    if (!wordPhonemes.containsKey(word)) {
+                        wordPhonemes.put(word, pool.submit(new WordTask(word)));
+                    }
+                }
+            }
+            LOG.debug("converting {} distinct words of {} sentences", wordPhonemes.size(), containers.size());
+
+            // assemble the sentences in order
+            for (PhonemeContainer container : containers) {
+                String[] words = container.getWords();
+                String[][] parts = new String[words.length][];
+                for (int i = 0; i < words.length; i++) {
+                    parts[i] = get(wordPhonemes.get(words[i]));
+                }
+                container.addPhonemesNoJep(PhonemeCreator.concat(parts));
+            }
+            return containers;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * converts a set of normalized words to phonemes
+     *
+     * @param words lower case words without special characters
+     * @return phoneme sequence for each word
+     */
+    public Map<String, String[]> getWordPhonemes(Collection<String> words) {
+        ExecutorService pool = newPool();
+        try {
+            Map<String, Future<String[]>> futures = new HashMap<String, Future<String[]>>();
+            for (String word : words) {
+                if (!futures.containsKey(word)) {
+                    futures.put(word, pool.submit(new WordTask(word)));
+                }
+            }
+            Map<String, String[]> wordPhonemes = new HashMap<String, String[]>();
+            for (Map.Entry<String, Future<String[]>> entry : futures.entrySet()) {
+                wordPhonemes.put(entry.getKey(), get(entry.getValue()));
+            }
+            return wordPhonemes;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * converts a set of normalized words to their best pronunciation variants
+     *
+     * @param words            lower case words without special characters
+     * @param numberOfVariants maximal number of variants per word
+     * @return the variants of each word
+     */
+    public Map<String, PronunciationVariants> getWordVariants(Collection<String> words, final int numberOfVariants) {
+        ExecutorService pool = newPool();
+        try {
+            Map<String, Future<PronunciationVariants>> futures = new HashMap<String, Future<PronunciationVariants>>();
+            for (final String word : words) {
+                if (!futures.containsKey(word)) {
+                    futures.put(word, pool.submit(new Callable<PronunciationVariants>() {
+                        @Override
+                        public PronunciationVariants call() {
+                            return pc.getWordVariants(word, numberOfVariants);
+                        }
+                    }));
+                }
+            }
+            Map<String, PronunciationVariants> wordVariants = new HashMap<String, PronunciationVariants>();
+            for (Map.Entry<String, Future<PronunciationVariants>> entry : futures.entrySet()) {
+                wordVariants.put(entry.getKey(), get(entry.getValue()));
+            }
+            return wordVariants;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private ExecutorService newPool() {
+        return Executors.newFixedThreadPool(numberOfThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "g2p-worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    private static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for G2P results");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("failed to convert word to phonemes, error: " + e.getCause().getMessage());
+        }
+    }
+
+    private class WordTask implements Callable<String[]> {
+
+        private final String word;
+
+        WordTask(String word) {
+            this.word = word;
+        }
+
+        @Override
+        public String[] call() {
+            return pc.getWordPhonemes(word);
+        }
+    }
+}
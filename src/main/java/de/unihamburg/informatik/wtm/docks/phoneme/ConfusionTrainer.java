@@ -0,0 +1,227 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import edu.cmu.sphinx.util.NISTAlign;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * learns the GOOGLE_REVERSE substitution table offline from a corpus of reference/hypothesis pairs.
+ * every line of the corpus holds "hypothesis;reference". both are converted to phonemes like
+ * recognition results, aligned by Sphinx' NISTAlign like GOOGLE_REVERSE always did
+ * and every aligned pair of phonemes is counted. the corpus is streamed in batches by a pool of
+ * workers, so it can be much larger than the memory. the resulting table is written by
+ * {@link PhonemeSubstitution#save(String)} and loaded at startup instead of being learned again.
+ */
+public class ConfusionTrainer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConfusionTrainer.class);
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int N = PhonemeSubstitution.NUMBER_OF_PHONEMES;
+
+    private final PhonemeCreator pc;
+    private final int numberOfThreads;
+
+    /**
+     * creates a trainer using one worker per available processor
+     *
+     * @param pc the phoneme creator used for the conversion of sentences
+     */
+    public ConfusionTrainer(PhonemeCreator pc) {
+        this(pc, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param pc              the phoneme creator used for the conversion of sentences
+     * @param numberOfThreads number of workers
+     */
+    public ConfusionTrainer(PhonemeCreator pc, int numberOfThreads) {
+        this.pc = pc;
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+    }
+
+    /**
+     * counts the phoneme substitutions of a corpus
+     *
+     * @param corpus path to the corpus, one "hypothesis;reference" pair per line
+     * @return number of times the reference phoneme was recognized as the input phoneme,
+     * indexed by ID of reference * NUMBER_OF_PHONEMES + ID of input (see PhonemeSubstitution.getPhonemeId)
+     * @throws IOException if the corpus cannot be read
+     */
+    public long[] train(String corpus) throws IOException {
+        long[] counts = new long[N * N];
+        ExecutorService pool = Executors.newFixedThreadPool(numberOfThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "confusion-trainer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        BufferedReader in = null;
+        try {
+            in = new BufferedReader(new FileReader(corpus));
+            // a few batches per worker are read ahead, the rest of the corpus stays on disk
+            LinkedList<Future<long[]>> pending = new LinkedList<Future<long[]>>();
+            long numberOfLines = 0;
+            List<String> batch = new ArrayList<String>(BATCH_SIZE);
+            String line;
+            while ((line = in.readLine()) != null) {
+                batch.add(line);
+                numberOfLines++;
+                if (batch.size() == BATCH_SIZE) {
+                    pending.add(pool.submit(new BatchTask(batch)));
+                    batch = new ArrayList<String>(BATCH_SIZE);
+                    if (pending.size() >= 2 * numberOfThreads) {
+                        add(counts, get(pending.removeFirst()));
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                pending.add(pool.submit(new BatchTask(batch)));
+            }
+            while (!pending.isEmpty()) {
+                add(counts, get(pending.removeFirst()));
+            }
+            LOG.info("counted substitutions of {} lines", numberOfLines);
+            return counts;
+        } finally {
+            IOUtils.closeQuietly(in);
+            pool.shutdownNow();
+        }
+    }
+
+    private static void add(long[] counts, long[] batchCounts) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += batchCounts[i];
+        }
+    }
+
+    private static long[] get(Future<long[]> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while counting substitutions");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("failed to count substitutions, error: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * aligns two phoneme sequences and counts the phonemes aligned to each other.
+     * insertions and deletions are not counted, neither are phonemes unknown to the substitution table.
+     *
+     * @param aligner   the aligner, keeps totals and must not be shared by threads
+     * @param reference phonemes of the reference
+     * @param input     phonemes of the input
+     * @param counts    counts indexed by ID of reference * NUMBER_OF_PHONEMES + ID of input
+     */
+    static void countSubstitutions(NISTAlign aligner, String[] reference, String[] input, long[] counts) {
+        aligner.align(join(reference), join(input));
+
+        // errors are upper case, insertions and deletions are aligned to stars
+        String[] alignedReference = aligner.getAlignedReference().replaceAll(" +", " ").split(" ");
+        String[] alignedInput = aligner.getAlignedHypothesis().replaceAll(" +", " ").split(" ");
+        for (int i = 0; i < alignedReference.length && i < alignedInput.length; i++) {
+            int r = PhonemeSubstitution.getPhonemeId(alignedReference[i].toUpperCase());
+            int h = PhonemeSubstitution.getPhonemeId(alignedInput[i].toUpperCase());
+            if (r >= 0 && h >= 0) {
+                counts[r * N + h]++;
+            }
+        }
+    }
+
+    private static String join(String[] phonemes) {
+        StringBuilder sb = new StringBuilder();
+        for (String p : phonemes) {
+            sb.append(p).append(' ');
+        }
+        return sb.toString();
+    }
+
+    private class BatchTask implements Callable<long[]> {
+
+        private final List<String> lines;
+
+        BatchTask(List<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public long[] call() {
+            long[] counts = new long[N * N];
+            NISTAlign aligner = new NISTAlign(true, true);
+            for (String line : lines) {
+                int separator = line.indexOf(';');
+                if (separator < 0) {
+                    continue;
+                }
+                String hypothesis = line.substring(0, separator);
+                String reference = line.substring(separator + 1);
+                List<PhonemeContainer> phonemes = pc.getPhonemes(Arrays.asList(reference, hypothesis));
+                // both need at least one word
+                if (phonemes.size() == 2) {
+                    countSubstitutions(aligner, phonemes.get(0).getPhonemes(), phonemes.get(1).getPhonemes(), counts);
+                }
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * learns a substitution table and writes it
+     *
+     * @param args corpus of "hypothesis;reference" lines, optionally the output file
+     *             (default: heinrichLab.google.refhyp.subst) and the number of workers
+     * @throws IOException if the corpus cannot be read or the table cannot be written
+     */
+    public static void main(String... args) throws IOException {
+        String output = args.length > 1 ? args[1]
+                : PhonemeSubstitution.GOOGLE_REVERSE_SOURCE + PhonemeSubstitution.TABLE_EXTENSION;
+        int numberOfThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.currentTimeMillis();
+        ConfusionTrainer trainer = new ConfusionTrainer(PhonemeCreator.getInstance(), numberOfThreads);
+        PhonemeSubstitution.fromCounts(trainer.train(args[0])).save(output);
+        System.out.println("The substitution table learned from " + args[0] + " has been written to " + output
+                + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
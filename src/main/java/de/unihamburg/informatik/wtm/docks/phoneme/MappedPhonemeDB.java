@@ -0,0 +1,308 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.unihamburg.informatik.wtm.docks.postprocessor.levenshteinbased.Levenshtein;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * read-only phoneme data base backed by a memory-mapped file.
+ * phoneme sequences are stored as one byte per phoneme and are read in place,
+ * so no heap objects are created per entry and several processes can share
+ * the same page-cached file.
+ * like the serialized {@link PhonemeDB}, the file records the sentence list and G2P model
+ * it was created from, so outdated files can be detected.
+ * <p/>
+ * File layout (big endian):
+ * <pre>
+ * int magic, int version, int numberOfEntries, int indexOffset, long contentHash
+ * short length, UTF-8 model version (empty if unknown)
+ * int numberOfSymbols, numberOfSymbols x (short length, UTF-8 bytes)
+ * numberOfEntries x (short phonemeCount, phonemeCount x byte, short length, UTF-8 result, short length, UTF-8 raw result)
+ * numberOfEntries x int entry offset (at indexOffset)
+ * </pre>
+ */
+public class MappedPhonemeDB {
+
+    /**
+     * file extension used for mapped phoneme data bases
+     */
+    public static final String EXTENSION = ".phdb";
+
+    private static final int MAGIC = 0x50484442; // "PHDB"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 24;
+    private static final int MAX_SYMBOLS = 256;
+    private static final int UNKNOWN_SYMBOL = -1;
+    private static final String CHARSET = "UTF-8";
+
+    private final MappedByteBuffer buffer;
+    private final IntBuffer index;
+    private final int size;
+    private final long contentHash;
+    private final String modelVersion;
+    private final Map<String, Integer> symbolIds;
+
+    private MappedPhonemeDB(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("not a phoneme data base of version " + VERSION);
+        }
+        size = buffer.getInt(8);
+        int indexOffset = buffer.getInt(12);
+        contentHash = buffer.getLong(16);
+
+        int position = HEADER_SIZE;
+        int versionLength = buffer.getShort(position) & 0xffff;
+        String version = readString(position + 2, versionLength);
+        modelVersion = version.length() > 0 ? version : null;
+        position += 2 + versionLength;
+
+        int numberOfSymbols = buffer.getInt(position);
+        position += 4;
+        symbolIds = new HashMap<String, Integer>();
+        for (int i = 0; i < numberOfSymbols; i++) {
+            int length = buffer.getShort(position) & 0xffff;
+            symbolIds.put(readString(position + 2, length), i);
+            position += 2 + length;
+        }
+
+        ByteBuffer indexBuffer = buffer.duplicate();
+        indexBuffer.position(indexOffset);
+        index = indexBuffer.slice().asIntBuffer();
+    }
+
+    /**
+     * maps an existing phoneme data base file into memory
+     *
+     * @param file path to the file
+     * @return the mapped data base
+     * @throws IOException if the file cannot be read or has a wrong format
+     */
+    public static MappedPhonemeDB open(String file) throws IOException {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            // the mapping stays valid after the channel is closed
+            return new MappedPhonemeDB(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * writes a list of phoneme sequences to a file readable by {@link #open(String)}.
+     * the file is written next to the target and moved into place once complete,
+     * so processes which mapped an earlier version keep reading that version.
+     *
+     * @param file         path to the file
+     * @param phonemes     the phoneme sequences, e.g. taken from a PhonemeDB
+     * @param modelVersion version of the G2P model the phonemes were created by, may be null
+     * @param contentHash  hash of the sentence list (see {@link PhonemeDB#hash(List)})
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(String file, List<PhonemeContainer> phonemes, String modelVersion, long contentHash)
+            throws IOException {
+        // collect the symbol table first
+        Map<String, Integer> symbols = new LinkedHashMap<String, Integer>();
+        for (PhonemeContainer pc : phonemes) {
+            for (String p : pc.getPhonemes()) {
+                if (!symbols.containsKey(p)) {
+                    symbols.put(p, symbols.size());
+                }
+            }
+        }
+        if (symbols.size() > MAX_SYMBOLS) {
+            throw new IOException("too many phoneme symbols: " + symbols.size());
+        }
+
+        File target = new File(file).getAbsoluteFile();
+        File temp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+        int[] offsets = new int[phonemes.size()];
+        DataOutputStream out = null;
+        boolean written = false;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(phonemes.size());
+            // index offset, patched below
+            out.writeInt(0);
+            out.writeLong(contentHash);
+            writeString(out, modelVersion != null ? modelVersion : "");
+
+            out.writeInt(symbols.size());
+            for (String symbol : symbols.keySet()) {
+                writeString(out, symbol);
+            }
+
+            for (int i = 0; i < phonemes.size(); i++) {
+                PhonemeContainer pc = phonemes.get(i);
+                offsets[i] = out.size();
+                String[] sequence = pc.getPhonemes();
+                out.writeShort(sequence.length);
+                for (String p : sequence) {
+                    out.writeByte(symbols.get(p));
+                }
+                writeString(out, pc.getResult());
+                writeString(out, pc.getRawResult());
+            }
+
+            int indexOffset = out.size();
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.close();
+
+            RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+            try {
+                raf.seek(12);
+                raf.writeInt(indexOffset);
+                raf.getFD().sync();
+            } finally {
+                raf.close();
+            }
+
+            // a file mapped by another process must never be truncated, so it is replaced instead
+            if (!temp.renameTo(target) && !(target.delete() && temp.renameTo(target))) {
+                throw new IOException("failed to move " + temp + " to " + target);
+            }
+            written = true;
+        } finally {
+            IOUtils.closeQuietly(out);
+            if (!written) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param modelVersion version of the G2P model
+     * @param contentHash  hash of the sentence list (see {@link PhonemeDB#hash(List)})
+     * @return true if the phonemes were created from the given sentence list and G2P model
+     */
+    public boolean isUpToDate(String modelVersion, long contentHash) {
+        return this.modelVersion != null && this.modelVersion.equals(modelVersion) && this.contentHash == contentHash;
+    }
+
+    /**
+     * converts a phoneme sequence to the symbol IDs of this data base.
+     * phonemes unknown to the data base get an ID that never matches.
+     *
+     * @param phonemes phoneme sequence
+     * @return the encoded sequence
+     */
+    public int[] encode(String[] phonemes) {
+        int[] encoded = new int[phonemes.length];
+        for (int i = 0; i < phonemes.length; i++) {
+            Integer id = symbolIds.get(phonemes[i]);
+            encoded[i] = id != null ? id : UNKNOWN_SYMBOL;
+        }
+        return encoded;
+    }
+
+    /**
+     * calculates the Levenshtein distance between an encoded phoneme sequence and an entry
+     *
+     * @param entry   index of the entry
+     * @param encoded phoneme sequence encoded by {@link #encode(String[])}
+     * @param row     work array of at least encoded.length + 1 elements
+     * @return the distance
+     */
+    public int distance(int entry, int[] encoded, int[] row) {
+        int offset = index.get(entry);
+        int length = buffer.getShort(offset) & 0xffff;
+        return Levenshtein.diff(encoded, buffer, offset + 2, length, row);
+    }
+
+    /**
+     * @param entry index of the entry
+     * @return number of phonemes of the entry
+     */
+    public int getPhonemeCount(int entry) {
+        return buffer.getShort(index.get(entry)) & 0xffff;
+    }
+
+    /**
+     * @param entry index of the entry
+     * @return the word sequence of the entry
+     */
+    public String getResult(int entry) {
+        int position = index.get(entry);
+        position += 2 + (buffer.getShort(position) & 0xffff);
+        return readString(position + 2, buffer.getShort(position) & 0xffff);
+    }
+
+    /**
+     * @param entry index of the entry
+     * @return the entry as it was written in the sentence list
+     */
+    public String getRawResult(int entry) {
+        int position = index.get(entry);
+        position += 2 + (buffer.getShort(position) & 0xffff);
+        position += 2 + (buffer.getShort(position) & 0xffff);
+        return readString(position + 2, buffer.getShort(position) & 0xffff);
+    }
+
+    private String readString(int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer b = buffer.duplicate();
+        b.position(position);
+        b.get(bytes);
+        try {
+            return new String(bytes, CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(CHARSET);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -22,21 +22,22 @@
 package de.unihamburg.informatik.wtm.docks.phoneme;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 
 /**
- * used by the phoneme creator to store phoneme sequences
+ * used by the phoneme creator to store phoneme sequences.
+ * words of grammar sentences are interned in the {@link WordPool}, so they are shared by all sentences.
  *
  * @author 7twiefel
  */
 public class PhonemeContainer implements Serializable {
 
+    // unchanged since fields were removed, which are skipped when reading caches of earlier versions
     private static final long serialVersionUID = 3851781084055799229L;
     private String[] phonemes;
+    // null if the raw result equals the result
     private String rawResult = null;
     private String[] words;
-    private String[] phonemesSorted;
-    private ArrayList<String> phonemesList = new ArrayList<String>();
+    private transient String result;
 
     public void addPhonemesNoJep(String[] phonemeSequence) {
         phonemes = phonemeSequence;
@@ -48,29 +49,15 @@ public class PhonemeContainer implements Serializable {
     public PhonemeContainer(String[] words) {
         super();
         this.words = words;
-        phonemesSorted = new String[words.length];
     }
 
-    public void setRawResult(String rawResult) {
-        this.rawResult = rawResult;
+    // share the words with all other grammar sentences
+    void internWords() {
+        words = WordPool.getInstance().intern(words);
     }
 
-    /**
-     * adds a phoneme for a word to the phoneme sequence
-     *
-     * @param label word as grapheme sequence
-     * @param seq   word as phoneme sequence
-     */
-    public void tryAddPhonemeSequence(String label, String seq) {
-        for (int i = 0; i < words.length; i++) {
-
-            if (label.equals(words[i])) {
-                phonemesSorted[i] = seq;
-            }
-
-        }
-        //System.out.println(Arrays.toString(words)+" "+Arrays.toString(phonemesSorted)) ;
-
+    public void setRawResult(String rawResult) {
+        this.rawResult = rawResult != null && rawResult.equals(getResult()) ? null : rawResult;
     }
 
     /**
@@ -84,30 +71,11 @@ public class PhonemeContainer implements Serializable {
         return words;
     }
 
-    /**
-     * after adding all phonemes, they need to be finalized
-     */
-    public void finalizePhonemes() {
-
-        for (int i = 0; i < phonemesSorted.length; i++) {
-
-            String[] s = phonemesSorted[i].split(" ");
-            for (String ss : s) {
-                phonemesList.add(ss);
-            }
-
-        }
-        phonemes = new String[phonemesList.size()];
-        phonemesList.toArray(phonemes);
-    }
-
     /**
      * prints out word sequences with their phoneme representation
      */
     public void print() {
-        for (String w : words) {
-            if (w == null)
-                break;
+        for (String w : getWords()) {
             System.out.print(w + " ");
 
         }
@@ -125,9 +93,7 @@ public class PhonemeContainer implements Serializable {
      * prints out word sequences
      */
     public void printShort() {
-        for (String w : words) {
-            if (w == null)
-                break;
+        for (String w : getWords()) {
             System.out.print(w + " ");
 
         }
@@ -138,14 +104,14 @@ public class PhonemeContainer implements Serializable {
      * @return the word sequences
      */
     public String getResult() {
-        String result = "";
-        for (String w : words) {
-            if (w == null)
-                break;
-            if (result.equals(""))
-                result = w;
-            else result = result + " " + w;
-
+        if (result == null) {
+            StringBuilder sb = new StringBuilder();
+            for (String w : words) {
+                if (sb.length() > 0)
+                    sb.append(' ');
+                sb.append(w);
+            }
+            result = sb.toString();
         }
         return result;
     }
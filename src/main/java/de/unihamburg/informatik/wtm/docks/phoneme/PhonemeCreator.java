@@ -31,16 +31,27 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.ArrayList;
-
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import edu.cmu.sphinx.linguist.g2p.G2PConverter;
 import edu.cmu.sphinx.linguist.g2p.Path;
 
 import de.unihamburg.informatik.wtm.docks.data.Result;
 import de.unihamburg.informatik.wtm.docks.utils.Printer;
+import de.unihamburg.informatik.wtm.docks.utils.TextNormalizer;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,42 +67,83 @@ public class PhonemeCreator {
     private static final Logger LOG = LoggerFactory.getLogger(PhonemeCreator.class);
 
     private static final String TAG = "PhonemeCreator";
+    private static final String MODEL = "g2p/sequitur/cmudict_sequitur.fst.ser";
+    // n-best lists of this length and longer are converted in parallel
+    static final int PARALLEL_THRESHOLD = 4;
     private static PhonemeCreator instance;
+    private static ExecutorService pool;
 
     private G2PConverter g2pDecoder;
+    /**
+     * identifies the G2P model, used to invalidate cached phonemes
+     */
+    private String modelVersion;
     /**
      * the phoneme data base created for a predefined list of sentences or words
      */
     private PhonemeDB pdb;
 
     /**
-     * creates a new phoneme creator and caches the results for the list of sentences
+     * creates a new phoneme creator and caches the results for the list of sentences.
+     * the cache is only trusted if it was created from the same sentence list and G2P model,
+     * otherwise only the lines that were added or changed are converted again.
      *
      * @param sentenceFile
      */
     public PhonemeCreator(String sentenceFile) {
-        this();
-        InputStream fis = null;
-        ObjectInputStream o1 = null;
-
-        try {
-            // try to read the cached phonemes
-            fis = new FileInputStream(sentenceFile + ".ser");
-            o1 = new ObjectInputStream(fis);
+        this(sentenceFile, 1);
+    }
 
-            pdb = new PhonemeDB();
-            pdb = (PhonemeDB) o1.readObject();
+    /**
+     * creates a new phoneme creator and caches the results for the list of sentences
+     * together with up to numberOfVariants pronunciation variants for each word.
+     *
+     * @param sentenceFile
+     * @param numberOfVariants number of pronunciation variants per word, 1 to store only the best one
+     */
+    public PhonemeCreator(String sentenceFile, int numberOfVariants) {
+        this();
+        loadSentenceFile(sentenceFile, numberOfVariants);
+    }
 
+    /**
+     * fills the phoneme data base from the cache of the sentence file, converting only the changed lines
+     *
+     * @param sentenceFile     path to the list of sentences without the extension .txt
+     * @param numberOfVariants number of pronunciation variants per word, 1 to store only the best one
+     */
+    void loadSentenceFile(String sentenceFile, int numberOfVariants) {
+        PhonemeDB cached = readCache(sentenceFile);
+        List<String> lines = readSentenceFile(sentenceFile);
+
+        if (lines == null) {
+            if (cached == null) {
+                LOG.error("failed to load sentence file {}. PhonemeDB is still empty.", sentenceFile);
+                pdb = new PhonemeDB();
+            } else {
+                LOG.warn("failed to load sentence file {}, using cached phonemes.", sentenceFile);
+                pdb = cached;
+            }
+        } else if (cached != null && cached.isUpToDate(modelVersion, PhonemeDB.hash(lines))) {
             LOG.info("successfully loaded phoneme db {}.ser", sentenceFile);
-        } catch (Exception e) {
-            LOG.info("failed to read cached phonemes from {}.ser, creating new database.", sentenceFile);
-
-            // if no cached phonemes are available cache ones
-            fillDatabase(sentenceFile);
+            pdb = cached;
+        } else {
+            if (cached == null) {
+                LOG.info("failed to read cached phonemes from {}.ser, creating new database.", sentenceFile);
+            } else if (!cached.isCreatedBy(modelVersion)) {
+                LOG.info("cached phonemes in {}.ser were created by another G2P model, creating new database.", sentenceFile);
+                cached = null;
+            } else {
+                LOG.info("sentence file {} has changed, updating database.", sentenceFile);
+            }
+            fillDatabase(sentenceFile, lines, cached);
+            writeCache(sentenceFile);
+        }
 
-        } finally {
-            IOUtils.closeQuietly(fis);
-            IOUtils.closeQuietly(o1);
+        if (lines != null && numberOfVariants > 1 && pdb.getNumberOfVariants() != numberOfVariants) {
+            LOG.info("creating {} pronunciation variants per word for {}", numberOfVariants, sentenceFile);
+            addVariants(cached, numberOfVariants);
+            writeCache(sentenceFile);
         }
     }
 
@@ -100,7 +152,8 @@ public class PhonemeCreator {
      */
     private PhonemeCreator() {
         ClassLoader cl = this.getClass().getClassLoader();
-        URL sequiturSphinxModel = cl.getResource("g2p/sequitur/cmudict_sequitur.fst.ser");
+        URL sequiturSphinxModel = cl.getResource(MODEL);
+        modelVersion = getModelVersion(sequiturSphinxModel);
         try {
             g2pDecoder = new G2PConverter(sequiturSphinxModel);
         } catch (IOException e) {
@@ -108,6 +161,17 @@ public class PhonemeCreator {
         }
     }
 
+    /**
+     * creates a phoneme creator for the given G2P converter
+     *
+     * @param g2pDecoder   the G2P converter
+     * @param modelVersion identifier of the G2P model
+     */
+    PhonemeCreator(G2PConverter g2pDecoder, String modelVersion) {
+        this.g2pDecoder = g2pDecoder;
+        this.modelVersion = modelVersion;
+    }
+
     /**
      * creates an instance of a phoneme creator. used when no precached results of a list of sentences should be loaded
      */
@@ -130,116 +194,308 @@ public class PhonemeCreator {
 
     /**
      * Creates a list of phonemes corresponding to the list of raw results.
+     * The list is not modified, so it can be shared by several threads. Long lists are converted in parallel.
      *
      * @param rawResults Result list received from a speech recognizer or postprocessor. needs to contain 1 entry as string as a minimum
-     * @return list of phonemes wrapped into a PhonemeContainer
+     * @return list of phonemes wrapped into a PhonemeContainer, null entries and raw results without any word are skipped
      */
     public List<PhonemeContainer> getPhonemes(List<String> rawResults) {
         Printer.printWithTimeF(TAG, "getting Phonemes");
 
-        List<PhonemeContainer> resultsWithPhonemes = new ArrayList<PhonemeContainer>();
-
         if (rawResults == null) {
-            return resultsWithPhonemes;
+            return new ArrayList<PhonemeContainer>();
         }
 
-        Printer.printWithTimeF(TAG, "formatting raw results");
-        // convert all results to lowercase and remove special characters
-        for (String rawResult : rawResults) {
-            Printer.printWithTimeF(TAG, "raw result: " + rawResult);
+        // work on a copy, the list may be changed by the caller
+        String[] hypotheses = rawResults.toArray(new String[rawResults.size()]);
+        PhonemeContainer[] containers = new PhonemeContainer[hypotheses.length];
 
-            String s = rawResult.replaceAll("[^a-zA-Z 0-9]", "");
-            s = s.replaceAll(" +", " ");
-            if ("".equals(s)) {
-                rawResults.remove(s);
-                continue;
+        if (hypotheses.length < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < hypotheses.length; i++) {
+                containers[i] = createContainer(hypotheses[i]);
+            }
+        } else {
+            List<Future<PhonemeContainer>> futures = new ArrayList<Future<PhonemeContainer>>(hypotheses.length);
+            for (final String rawResult : hypotheses) {
+                futures.add(getPool().submit(new Callable<PhonemeContainer>() {
+                    @Override
+                    public PhonemeContainer call() {
+                        return createContainer(rawResult);
+                    }
+                }));
             }
-            if (s.charAt(0) == ' ') {
-                s = s.substring(1);
+            for (int i = 0; i < containers.length; i++) {
+                containers[i] = get(futures.get(i));
             }
+        }
 
-            // split the sentences to words and add theses to the args for SequiturG2P
-            String[] words = s.toLowerCase().split(" ");
+        List<PhonemeContainer> resultsWithPhonemes = new ArrayList<PhonemeContainer>(containers.length);
+        for (PhonemeContainer pc : containers) {
+            if (pc != null) {
+                resultsWithPhonemes.add(pc);
+            }
+        }
+        return resultsWithPhonemes;
+    }
 
-            PhonemeContainer pc = new PhonemeContainer(words);
-            pc.setRawResult(rawResult);
+    // converts a single raw result or returns null if it contains no word
+    private PhonemeContainer createContainer(String rawResult) {
+        Printer.printWithTimeF(TAG, "raw result: " + rawResult);
+        if (rawResult == null) {
+            return null;
+        }
 
-            ArrayList<Path> paths = g2pDecoder.phoneticize(s, 1);
-            Path p = paths.get(0);
+        // split the sentences to words and convert them one by one like the lines of a sentence file
+        String[] words = TextNormalizer.toWords(rawResult);
+        if (words == null) {
+            return null;
+        }
 
-            String[] phonemes = new String[p.getPath().size()];
-            p.getPath().toArray(phonemes);
-            pc.addPhonemesNoJep(phonemes);
+        PhonemeContainer pc = new PhonemeContainer(words);
+        pc.setRawResult(rawResult);
 
-            resultsWithPhonemes.add(pc);
+        String[][] parts = new String[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            parts[i] = getWordPhonemes(words[i]);
         }
+        pc.addPhonemesNoJep(concat(parts));
+        return pc;
+    }
 
-        return resultsWithPhonemes;
+    // joins the phonemes of the words of a sentence
+    static String[] concat(String[][] parts) {
+        int length = 0;
+        for (String[] part : parts) {
+            length += part.length;
+        }
+        String[] phonemes = new String[length];
+        int position = 0;
+        for (String[] part : parts) {
+            System.arraycopy(part, 0, phonemes, position, part.length);
+            position += part.length;
+        }
+        return phonemes;
+    }
+
+    // shared by all phoneme creators, the threads do not keep the process alive
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "g2p-worker");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return pool;
+    }
+
+    private static PhonemeContainer get(Future<PhonemeContainer> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for G2P results");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("failed to convert result to phonemes, error: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * converts a single normalized word to phonemes
+     *
+     * @param word lower case word without special characters
+     * @return phoneme sequence of the word, not interned (grammars intern their finished
+     * sequences in the {@link PhonemeSequencePool})
+     */
+    public String[] getWordPhonemes(String word) {
+        ArrayList<Path> paths = g2pDecoder.phoneticize(word, 1);
+        if (paths.isEmpty()) {
+            return new String[0];
+        }
+        ArrayList<String> path = paths.get(0).getPath();
+        return path.toArray(new String[path.size()]);
+    }
+
+    /**
+     * converts a single normalized word to its best pronunciation variants
+     *
+     * @param word             lower case word without special characters
+     * @param numberOfVariants maximal number of variants
+     * @return the variants
+     */
+    public PronunciationVariants getWordVariants(String word, int numberOfVariants) {
+        ArrayList<Path> paths = g2pDecoder.phoneticize(word, numberOfVariants);
+        List<String[]> variants = new ArrayList<String[]>(paths.size());
+        for (Path path : paths) {
+            variants.add(path.getPath().toArray(new String[path.getPath().size()]));
+        }
+        return new PronunciationVariants(variants);
     }
 
     public PhonemeDB getPhonemeDb() {
         return pdb;
     }
 
-    private void fillDatabase(String sentenceFile) {
-        pdb = new PhonemeDB();
+    /**
+     * @return identifier of the G2P model used by this phoneme creator
+     */
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    // identify the model by location, size and modification time
+    private static String getModelVersion(URL model) {
+        if (model == null) {
+            return null;
+        }
+        try {
+            URLConnection connection = model.openConnection();
+            String version = MODEL + ";" + connection.getContentLength() + ";" + connection.getLastModified();
+            IOUtils.closeQuietly(connection.getInputStream());
+            return version;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // read the cached phoneme db or return null
+    private static PhonemeDB readCache(String sentenceFile) {
+        InputStream fis = null;
+        ObjectInputStream o1 = null;
+        try {
+            fis = new FileInputStream(sentenceFile + ".ser");
+            o1 = new ObjectInputStream(fis);
+            return (PhonemeDB) o1.readObject();
+        } catch (Exception e) {
+            return null;
+        } finally {
+            IOUtils.closeQuietly(fis);
+            IOUtils.closeQuietly(o1);
+        }
+    }
+
+    /**
+     * calculates the hash used to detect changes of a sentence list
+     *
+     * @param sentenceFile path to the list of sentences without the extension .txt
+     * @return hash of the lines (see {@link PhonemeDB#hash(List)}) or null if the file cannot be read
+     */
+    public static Long getContentHash(String sentenceFile) {
+        List<String> lines = readSentenceFile(sentenceFile);
+        return lines != null ? PhonemeDB.hash(lines) : null;
+    }
 
+    // read the lines of the sentence file or return null
+    private static List<String> readSentenceFile(String sentenceFile) {
         Scanner in = null;
         try {
-            // reads sentence file
             in = new Scanner(new FileReader(sentenceFile + ".txt"));
             in.useDelimiter("\n");
 
-            Result r = new Result();
+            List<String> lines = new ArrayList<String>();
             String temp;
-
-            // separate words and add the to the input arg
             while (in.hasNext()) {
                 temp = in.next();
                 if (temp.contains("\r")) {
                     temp = temp.substring(0, temp.length() - 1);
-                } else temp = temp.substring(0, temp.length());
-
-                r.addResult(temp);
+                }
+                lines.add(temp);
+            }
+            return lines;
+        } catch (FileNotFoundException e) {
+            return null;
+        } finally {
+            if (in != null) {
+                in.close();
             }
-            LOG.debug("getting results");
+        }
+    }
 
-            // get the phonemes
-            List<PhonemeContainer> phonemes = getPhonemes(r);
+    /**
+     * fills the data base with the phonemes for the given lines.
+     * phonemes for lines already contained in the cached data base are reused.
+     */
+    private void fillDatabase(String sentenceFile, List<String> lines, PhonemeDB cached) {
+        pdb = new PhonemeDB();
+
+        // collect the lines which are not cached yet
+        List<String> missing = new ArrayList<String>();
+        for (String line : lines) {
+            if (cached == null || cached.getCachedPhonemes(line) == null) {
+                missing.add(line);
+            }
+        }
+        LOG.debug("getting results for {} of {} lines", missing.size(), lines.size());
 
-            LOG.debug("phoneme creation successful!");
+        // get the phonemes, converting each distinct word once in parallel
+        Map<String, PhonemeContainer> created = new HashMap<String, PhonemeContainer>();
+        for (PhonemeContainer pc : new BulkPhonemeCreator(this).getPhonemes(missing.iterator())) {
+            created.put(pc.getRawResult(), pc);
+        }
 
-            // set the public data base to the phonemes
-            pdb.setPhonemes(getPhonemes(r));
+        LOG.debug("phoneme creation successful!");
 
-            // add the phonemes to the database
-            for (PhonemeContainer res : phonemes) {
-                pdb.addHashContent(res.getResult(), res.getPhonemes());
+        // keep the order of the sentence file
+        List<PhonemeContainer> phonemes = new ArrayList<PhonemeContainer>();
+        for (String line : lines) {
+            PhonemeContainer pc = cached != null ? cached.getCachedPhonemes(line) : null;
+            if (pc == null) {
+                pc = created.get(line);
+            }
+            if (pc != null) {
+                phonemes.add(pc);
             }
+        }
+
+        // set the public data base to the phonemes
+        pdb.setPhonemes(phonemes);
+        pdb.setSource(modelVersion, PhonemeDB.hash(lines));
+    }
 
-            OutputStream fos = null;
-            ObjectOutputStream o = null;
-
-            // serialize the database
-            try {
-                fos = new FileOutputStream(sentenceFile + ".ser");
-                o = new ObjectOutputStream(fos);
-                o.writeObject(pdb);
-
-            } catch (IOException e) {
-                LOG.error("failed to serialize phoneme database {}.ser, error: {}",
-                        sentenceFile, e.getMessage());
-            } finally {
-                IOUtils.closeQuietly(fos);
-                IOUtils.closeQuietly(o);
+    /**
+     * adds the pronunciation variants of all words to the data base.
+     * variants of the same number already contained in the previous data base are reused.
+     */
+    private void addVariants(PhonemeDB previous, int numberOfVariants) {
+        Map<String, PronunciationVariants> variants = new HashMap<String, PronunciationVariants>();
+        Set<String> missing = new HashSet<String>();
+        for (PhonemeContainer pc : pdb.getPhonemes()) {
+            for (String word : pc.getWords()) {
+                PronunciationVariants v = null;
+                if (previous != null && previous.getNumberOfVariants() == numberOfVariants) {
+                    v = previous.getVariants(word);
+                }
+                if (v != null) {
+                    variants.put(word, v);
+                } else {
+                    missing.add(word);
+                }
             }
+        }
+        LOG.debug("getting variants for {} words", missing.size());
+        variants.putAll(new BulkPhonemeCreator(this).getWordVariants(missing, numberOfVariants));
+        pdb.setVariants(variants, numberOfVariants);
+    }
 
-        } catch (FileNotFoundException e) {
-            LOG.error("failed to load sentence file {}. PhonemeDB is still empty.", sentenceFile);
+    private void writeCache(String sentenceFile) {
+        OutputStream fos = null;
+        ObjectOutputStream o = null;
+
+        // serialize the database
+        try {
+            fos = new FileOutputStream(sentenceFile + ".ser");
+            o = new ObjectOutputStream(fos);
+            o.writeObject(pdb);
+
+        } catch (IOException e) {
+            LOG.error("failed to serialize phoneme database {}.ser, error: {}",
+                    sentenceFile, e.getMessage());
         } finally {
-            if (in != null) {
-                in.close();
-            }
+            IOUtils.closeQuietly(fos);
+            IOUtils.closeQuietly(o);
         }
     }
 }
@@ -21,10 +21,13 @@
  */
 package de.unihamburg.informatik.wtm.docks.phoneme;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * containes the stored phonemes (used by phoneme creator)
@@ -35,20 +38,154 @@ public class PhonemeDB implements Serializable {
 
     private static final long serialVersionUID = 6246046410395137574L;
 
-    // TODO: hashContent is never used (?)
-    private HashMap<String, String[]> hashContent = new HashMap<String, String[]>();
     private List<PhonemeContainer> arrayContent = new ArrayList<PhonemeContainer>();
 
+    // describe the sentence list and G2P model the phonemes were created from
+    private String modelVersion;
+    private long contentHash;
+    private long[] lineHashes;
+    private transient Map<Long, Integer> lineIndex;
+
+    // pronunciation variants of every word, shared by all sentences containing the word
+    private HashMap<String, PronunciationVariants> variants;
+    private int numberOfVariants;
+
     public List<PhonemeContainer> getPhonemes() {
         return arrayContent;
     }
 
     public void setPhonemes(List<PhonemeContainer> phonemes) {
         arrayContent = phonemes;
+        internPhonemes();
+        lineHashes = new long[phonemes.size()];
+        for (int i = 0; i < lineHashes.length; i++) {
+            lineHashes[i] = hash(phonemes.get(i).getRawResult());
+        }
+        lineIndex = null;
+    }
+
+    // equal sequences and words of all data bases in the process are stored once
+    private void internPhonemes() {
+        PhonemeSequencePool pool = PhonemeSequencePool.getInstance();
+        for (PhonemeContainer pc : arrayContent) {
+            if (pc.getPhonemes() != null) {
+                pc.addPhonemesNoJep(pool.intern(pc.getPhonemes()));
+            }
+            pc.internWords();
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        internPhonemes();
+    }
+
+    /**
+     * stores the pronunciation variants of the words
+     *
+     * @param variants         variants of each word
+     * @param numberOfVariants maximal number of variants per word requested from G2P
+     */
+    public void setVariants(Map<String, PronunciationVariants> variants, int numberOfVariants) {
+        this.variants = new HashMap<String, PronunciationVariants>(variants);
+        this.numberOfVariants = numberOfVariants;
+    }
+
+    /**
+     * @param word lower case word
+     * @return the pronunciation variants of the word or null if none are stored
+     */
+    public PronunciationVariants getVariants(String word) {
+        return variants != null ? variants.get(word) : null;
+    }
+
+    /**
+     * @return maximal number of variants per word or 0 if no variants are stored
+     */
+    public int getNumberOfVariants() {
+        return numberOfVariants;
+    }
+
+    /**
+     * stores the source the phonemes were created from
+     *
+     * @param modelVersion version of the G2P model
+     * @param contentHash  hash of the sentence list (see {@link #hash(List)})
+     */
+    public void setSource(String modelVersion, long contentHash) {
+        this.modelVersion = modelVersion;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * @param modelVersion version of the G2P model
+     * @return true if the phonemes were created by the given G2P model
+     */
+    public boolean isCreatedBy(String modelVersion) {
+        return this.modelVersion != null && this.modelVersion.equals(modelVersion) && lineHashes != null;
+    }
+
+    /**
+     * @param modelVersion version of the G2P model
+     * @param contentHash  hash of the sentence list (see {@link #hash(List)})
+     * @return true if the phonemes were created from the given sentence list and G2P model
+     */
+    public boolean isUpToDate(String modelVersion, long contentHash) {
+        return isCreatedBy(modelVersion) && this.contentHash == contentHash;
+    }
+
+    /**
+     * looks up the phonemes already created for a line of the sentence list
+     *
+     * @param line line of the sentence list
+     * @return the phonemes or null if the line is unknown
+     */
+    public PhonemeContainer getCachedPhonemes(String line) {
+        if (lineHashes == null) {
+            return null;
+        }
+        if (lineIndex == null) {
+            lineIndex = new HashMap<Long, Integer>();
+            for (int i = 0; i < lineHashes.length; i++) {
+                lineIndex.put(lineHashes[i], i);
+            }
+        }
+        Integer i = lineIndex.get(hash(line));
+        if (i == null) {
+            return null;
+        }
+        PhonemeContainer pc = arrayContent.get(i);
+        // guard against hash collisions
+        return line.equals(pc.getRawResult()) ? pc : null;
+    }
+
+    /**
+     * calculates a 64 bit FNV-1a hash of a line
+     *
+     * @param line line of the sentence list
+     * @return the hash
+     */
+    public static long hash(String line) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < line.length(); i++) {
+            h ^= line.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
     }
 
-    public void addHashContent(String words, String[] phonemes) {
-        hashContent.put(words, phonemes);
+    /**
+     * calculates a hash of a whole sentence list, depending on the order of the lines
+     *
+     * @param lines lines of the sentence list
+     * @return the hash
+     */
+    public static long hash(List<String> lines) {
+        long h = lines.size();
+        for (String line : lines) {
+            h = h * 31 + hash(line);
+        }
+        return h;
     }
 
 }
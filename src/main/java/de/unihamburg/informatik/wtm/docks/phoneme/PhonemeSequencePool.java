@@ -0,0 +1,119 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * process-wide pool of phoneme sequences. equal sequences of all loaded grammars are
+ * stored only once, their phonemes are interned.
+ * sequences are only weakly referenced, so they are removed once no grammar uses them anymore.
+ */
+public class PhonemeSequencePool {
+
+    private static PhonemeSequencePool instance;
+
+    // sequences by the hash of their content
+    private final Map<Integer, List<Entry>> entries = new HashMap<Integer, List<Entry>>();
+    private final ReferenceQueue<String[]> queue = new ReferenceQueue<String[]>();
+    private int size;
+
+    private static final class Entry extends WeakReference<String[]> {
+
+        final int hash;
+
+        Entry(String[] sequence, int hash, ReferenceQueue<String[]> queue) {
+            super(sequence, queue);
+            this.hash = hash;
+        }
+    }
+
+    private PhonemeSequencePool() {
+    }
+
+    public static synchronized PhonemeSequencePool getInstance() {
+        if (instance == null) {
+            instance = new PhonemeSequencePool();
+        }
+        return instance;
+    }
+
+    /**
+     * @param phonemes phoneme sequence
+     * @return an equal sequence shared by all users of the pool
+     */
+    public synchronized String[] intern(String[] phonemes) {
+        expunge();
+        int hash = Arrays.hashCode(phonemes);
+        List<Entry> bucket = entries.get(hash);
+        if (bucket != null) {
+            for (Entry e : bucket) {
+                String[] sequence = e.get();
+                if (sequence != null && Arrays.equals(sequence, phonemes)) {
+                    return sequence;
+                }
+            }
+        } else {
+            bucket = new ArrayList<Entry>(1);
+            entries.put(hash, bucket);
+        }
+
+        // keep a copy of our own, the phonemes themselves are interned
+        String[] sequence = new String[phonemes.length];
+        for (int i = 0; i < phonemes.length; i++) {
+            sequence[i] = phonemes[i].intern();
+        }
+        bucket.add(new Entry(sequence, hash, queue));
+        size++;
+        return sequence;
+    }
+
+    /**
+     * @return number of sequences currently in the pool
+     */
+    public synchronized int size() {
+        expunge();
+        return size;
+    }
+
+    // removes the entries of sequences no longer used
+    private void expunge() {
+        Reference<? extends String[]> r;
+        while ((r = queue.poll()) != null) {
+            Entry e = (Entry) r;
+            List<Entry> bucket = entries.get(e.hash);
+            if (bucket != null && bucket.remove(e)) {
+                size--;
+                if (bucket.isEmpty()) {
+                    entries.remove(e.hash);
+                }
+            }
+        }
+    }
+}
@@ -21,10 +21,19 @@
  */
 package de.unihamburg.informatik.wtm.docks.phoneme;
 
-import java.text.DecimalFormat;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import de.unihamburg.informatik.wtm.docks.data.Result;
 import de.unihamburg.informatik.wtm.docks.phoneme.categories.Excitation;
@@ -34,7 +43,11 @@ import de.unihamburg.informatik.wtm.docks.phoneme.categories.VowelBackness;
 import de.unihamburg.informatik.wtm.docks.phoneme.categories.VowelHeight;
 import de.unihamburg.informatik.wtm.docks.utils.FileLoop;
 import de.unihamburg.informatik.wtm.docks.utils.FileProcessor;
+import edu.cmu.sphinx.util.LogMath;
 import edu.cmu.sphinx.util.NISTAlign;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * containes the 0.1/0.9, Derived IPA and Google Revers Heuristic
@@ -44,15 +57,50 @@ import edu.cmu.sphinx.util.NISTAlign;
  */
 public class PhonemeSubstitution {
 
-    private String[] signs = new String[]{"SIL", "AA", "AE", "AH", "AO", "AW", "AY",
+    private static final Logger LOG = LoggerFactory.getLogger(PhonemeSubstitution.class);
+
+    private static final String[] signs = new String[]{"SIL", "AA", "AE", "AH", "AO", "AW", "AY",
             "B", "CH", "D", "DH", "EH", "ER", "EY", "F", "G", "HH", "IH", "IY",
             "JH", "K", "L", "M", "N", "NG", "OW", "OY", "P", "R", "S", "SH",
             "T", "TH", "UH", "UW", "V", "W", "Y", "Z", "ZH"};
 
+    /**
+     * number of phonemes, IDs range from 0 to NUMBER_OF_PHONEMES - 1
+     */
+    public static final int NUMBER_OF_PHONEMES = signs.length;
+
+    private static final HashMap<String, Integer> phonemeIds = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < signs.length; i++) {
+            phonemeIds.put(signs[i], i);
+        }
+    }
+
+    // log scores of all pairs of phonemes, indexed by ID of phoneme1 * NUMBER_OF_PHONEMES + ID of phoneme2
+    private float[] logScores;
+
     public static int STANDARD = 0;
     public static int IPA_TABLE = 1;
     public static int GOOGLE_REVERSE = 2;
 
+    /**
+     * file the GOOGLE_REVERSE heuristic is derived from
+     */
+    public static final String GOOGLE_REVERSE_SOURCE = "heinrichLab.google.refhyp";
+
+    /**
+     * extension of precomputed score tables (see {@link #save(String)})
+     */
+    public static final String TABLE_EXTENSION = ".subst";
+
+    private static final int MAGIC = 0x50535542; // "PSUB"
+    private static final int VERSION = 1;
+
+    // one table per method, written once and read without locking
+    private static final AtomicReferenceArray<PhonemeSubstitution> registry =
+            new AtomicReferenceArray<PhonemeSubstitution>(3);
+
     private PhonemeSubstitution(int method) {
 
         if (method == IPA_TABLE) {
@@ -62,42 +110,184 @@ public class PhonemeSubstitution {
             initMapsGoogleReverse();
         else if (method == STANDARD)
             initMapsStandard();
+        initLogScores();
+
+    }
+
+    /**
+     * creates a substitutor from precomputed scores
+     *
+     * @param scores scores of all pairs of phonemes, keyed by "phoneme1;phoneme2"
+     */
+    private PhonemeSubstitution(Map<String, Double> scores) {
+        fastScoreMapNormalized.putAll(scores);
+        initLogScores();
+    }
+
+    private PhonemeSubstitution(long[] counts) {
+        initMapsFromCounts(counts);
+        initLogScores();
+    }
+
+    /**
+     * precomputes the log scores, so scoring does not need to look up or convert anything
+     */
+    private void initLogScores() {
+        LogMath logMath = LogMath.getInstance();
+        logScores = new float[NUMBER_OF_PHONEMES * NUMBER_OF_PHONEMES];
+        for (int i = 0; i < NUMBER_OF_PHONEMES; i++) {
+            for (int j = 0; j < NUMBER_OF_PHONEMES; j++) {
+                Double score = fastScoreMapNormalized.get(signs[i] + ";" + signs[j]);
+                if (score == null) {
+                    throw new RuntimeException("no substitution score for " + signs[i] + " and " + signs[j]);
+                }
+                logScores[i * NUMBER_OF_PHONEMES + j] = logMath.linearToLog(score);
+            }
+        }
+    }
 
+    /**
+     * @param phoneme a phoneme, e.g. "AH"
+     * @return the ID of the phoneme or -1 if it is unknown
+     */
+    public static int getPhonemeId(String phoneme) {
+        Integer id = phonemeIds.get(phoneme);
+        return id != null ? id : -1;
+    }
 
+    /**
+     * @param id ID of a phoneme
+     * @return the phoneme
+     */
+    public static String getPhoneme(int id) {
+        return signs[id];
     }
 
     /**
-     * returns an instance of a substitutor based on the heuristic chosen
+     * returns an instance of a substitutor based on the heuristic chosen.
+     * instances should be created at startup by {@link #initialize(int...)},
+     * otherwise the first call creates the instance.
      *
      * @param method
      * @return
      */
     public static PhonemeSubstitution getInstance(int method) {
-        switch (method) {
-            case 0:
-                if (stStandard == null)
-                    stStandard = new PhonemeSubstitution(method);
-                return stStandard;
-
-            case 1:
-                if (stIPA == null)
-                    stIPA = new PhonemeSubstitution(method);
-                return stIPA;
-
-            case 2:
-                if (stGoogleReverse == null)
-                    stGoogleReverse = new PhonemeSubstitution(method);
-                return stGoogleReverse;
-
-            default:
-                return null;
+        if (method < 0 || method >= registry.length()) {
+            return null;
+        }
+        PhonemeSubstitution instance = registry.get(method);
+        return instance != null ? instance : create(method);
+    }
+
+    /**
+     * creates the substitutors of the given heuristics, so they are not created by the first request
+     *
+     * @param methods the heuristics
+     */
+    public static void initialize(int... methods) {
+        for (int method : methods) {
+            if (getInstance(method) == null) {
+                throw new IllegalArgumentException("unknown substitution method " + method);
+            }
+        }
+    }
+
+    /**
+     * uses a precomputed score table for a heuristic
+     *
+     * @param method the heuristic
+     * @param file   path to a table written by {@link #save(String)}
+     * @throws IOException if the table cannot be read
+     */
+    public static void initialize(int method, String file) throws IOException {
+        PhonemeSubstitution instance = load(file);
+        if (!registry.compareAndSet(method, null, instance)) {
+            throw new IllegalStateException("substitution method " + method + " is already initialized");
         }
+    }
 
+    // creating is synchronized, so every table is only built once
+    private static synchronized PhonemeSubstitution create(int method) {
+        PhonemeSubstitution instance = registry.get(method);
+        if (instance == null) {
+            long start = System.currentTimeMillis();
+            instance = method == GOOGLE_REVERSE ? createGoogleReverse() : new PhonemeSubstitution(method);
+            registry.set(method, instance);
+            LOG.info("created substitution method {} in {} ms", method, System.currentTimeMillis() - start);
+        }
+        return instance;
+    }
+
+    // uses the precomputed table if there is one, parsing the source runs G2P on every line
+    private static PhonemeSubstitution createGoogleReverse() {
+        File table = new File(GOOGLE_REVERSE_SOURCE + TABLE_EXTENSION);
+        if (table.isFile()) {
+            try {
+                return load(table.getPath());
+            } catch (IOException e) {
+                LOG.warn("failed to load {}, error: {}", table, e.getMessage());
+            }
+        }
+        return new PhonemeSubstitution(GOOGLE_REVERSE);
+    }
+
+    /**
+     * reads a score table written by {@link #save(String)}
+     *
+     * @param file path to the table
+     * @return a substitutor using the table
+     * @throws IOException if the table cannot be read or is incomplete
+     */
+    public static PhonemeSubstitution load(String file) throws IOException {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a substitution table of version " + VERSION);
+            }
+            String[] names = new String[in.readInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readUTF();
+            }
+            HashMap<String, Double> scores = new HashMap<String, Double>();
+            for (String s1 : names) {
+                for (String s2 : names) {
+                    scores.put(s1 + ";" + s2, in.readDouble());
+                }
+            }
+            return new PhonemeSubstitution(scores);
+        } catch (RuntimeException e) {
+            throw new IOException("invalid substitution table " + file + ", error: " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
     }
 
-    private static PhonemeSubstitution stStandard = null;
-    private static PhonemeSubstitution stIPA = null;
-    private static PhonemeSubstitution stGoogleReverse = null;
+    /**
+     * writes the scores, so the table can be loaded without computing it again
+     *
+     * @param file path to the table
+     * @throws IOException if the table cannot be written
+     */
+    public void save(String file) throws IOException {
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(signs.length);
+            for (String s : signs) {
+                out.writeUTF(s);
+            }
+            for (String s1 : signs) {
+                for (String s2 : signs) {
+                    out.writeDouble(getScore(s1, s2));
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
 
     /**
      * prints out the substitution table
@@ -195,9 +385,10 @@ public class PhonemeSubstitution {
     }
 
 
-    private Hashtable<String, Phoneme> phonemes = new Hashtable<String, Phoneme>();
-    private HashMap<String, Integer> fastScoreMap = new HashMap<String, Integer>();
-    private HashMap<String, Double> fastScoreMapNormalized = new HashMap<String, Double>();
+    // only written while the instance is created
+    private final Hashtable<String, Phoneme> phonemes = new Hashtable<String, Phoneme>();
+    private final HashMap<String, Integer> fastScoreMap = new HashMap<String, Integer>();
+    private final HashMap<String, Double> fastScoreMapNormalized = new HashMap<String, Double>();
 
     /**
      * initializes the score map for 0.1/0.9
@@ -234,33 +425,16 @@ public class PhonemeSubstitution {
                 fastScoreMap.put(s1 + ";" + s2, max - dist);
             }
         }
-        System.out.print("     ");
-        for (String s : signs) {
-            s = String.format("%4s", s);
-            System.out.print(s + " ");
-        }
-        System.out.println();
-        DecimalFormat f = new DecimalFormat("#0.00");
-
         //normalizes the scores
         for (String s1 : signs) {
-            String s = s1;
-            s = String.format("%4s", s);
-            System.out.print(s + " ");
             for (String s2 : signs) {
                 //get the ipa derived distance
                 int dist = max - getDistance(s1, s2);
                 //normalize with special function
                 double normalizedDist = normalize(0, max, dist, 0.1, 0.9);
                 fastScoreMapNormalized.put(s1 + ";" + s2, normalizedDist);
-                String result = normalizedDist + "";
-                result = String.format("%4s", result);
-                System.out.print(f.format(normalizedDist) + " ");
             }
-            System.out.println();
         }
-        printTable();
-
     }
 
     /**
@@ -270,7 +444,7 @@ public class PhonemeSubstitution {
     private void initMapsGoogleReverse() {
         //process a cached result file of half of the scripted data set containing reference and hypothesis
         new FileProcessor(
-                "heinrichLab.google.refhyp",
+                GOOGLE_REVERSE_SOURCE,
                 new FileLoop() {
 
                     PhonemeCreator pc = PhonemeCreator.getInstance();
@@ -279,7 +453,7 @@ public class PhonemeSubstitution {
                             true, true);
                     List<PhonemeContainer> phonemesSpeech = null;
                     Result r;
-                    HashMap<String, Integer> hm = new HashMap<String, Integer>();
+                    long[] counts = new long[NUMBER_OF_PHONEMES * NUMBER_OF_PHONEMES];
 
                     @Override
                     public void process(String line) {
@@ -294,39 +468,9 @@ public class PhonemeSubstitution {
                         r.addResult(hyp);
                         phonemesSpeech = pc.getPhonemes(r);
 
-                        String refPhonemes = "";
-                        for (String s : phonemesSpeech.get(0).getPhonemes())
-                            refPhonemes = refPhonemes + s + " ";
-
-                        String hypPhonemes = "";
-                        for (String s : phonemesSpeech.get(1).getPhonemes())
-                            hypPhonemes = hypPhonemes + s + " ";
-
-
-                        //align ref and hyp
-                        alignerPhonemesReverse.align(refPhonemes, hypPhonemes);
-
-
-                        String alignedRef = alignerPhonemesReverse
-                                .getAlignedReference();
-                        String alignedHyp = alignerPhonemesReverse
-                                .getAlignedHypothesis();
-
-
-                        alignedRef = alignedRef.replaceAll(" +", " ");
-                        alignedHyp = alignedHyp.replaceAll(" +", " ");
-                        String[] refWords = alignedRef.split(" ");
-                        String[] hypWords = alignedHyp.split(" ");
-
-                        //calculate the number of substitutions for each phoneme by each other phoneme
-                        for (int i = 0; i < refWords.length; i++) {
-                            String key = refWords[i].toUpperCase() + ";"
-                                    + hypWords[i].toUpperCase();
-                            if (!hm.containsKey(key))
-                                hm.put(key, 1);
-                            else
-                                hm.put(key, hm.get(key) + 1);
-                        }
+                        //align ref and hyp and count the substitutions for each phoneme by each other phoneme
+                        ConfusionTrainer.countSubstitutions(alignerPhonemesReverse,
+                                phonemesSpeech.get(0).getPhonemes(), phonemesSpeech.get(1).getPhonemes(), counts);
                     }
 
                     @Override
@@ -337,47 +481,52 @@ public class PhonemeSubstitution {
 
                     @Override
                     public void end() {
-
-
-                        // TODO Auto-generated method stub
-                        System.out.print("     ");
-                        for (String s : signs) {
-                            s = String.format("%4s", s);
-                            System.out.print(s + " ");
-                        }
-                        System.out.println();
-                        DecimalFormat f = new DecimalFormat("#0.00");
-
-                        //normalize the distance table to a score table
-                        for (String s1 : signs) {
-                            String s = s1;
-                            s = String.format("%4s", s);
-                            System.out.print(s + " ");
-                            for (String s2 : signs) {
-                                double normalizedScore = 0.1;
-
-                                if (hm.containsKey(s1 + ";" + s2))
-                                    normalizedScore = normalizeLinear(0,
-                                            hm.get(s1 + ";" + s1),
-                                            hm.get(s1 + ";" + s2), 0.1, 0.9);
-                                fastScoreMapNormalized.put(s1 + ";" + s2,
-                                        normalizedScore);
-                                String result = normalizedScore + "";
-                                result = String.format("%4s", result);
-
-                                System.out.print(f.format(normalizedScore)
-                                        + " ");
-                            }
-                            System.out.println();
-                        }
-
-                        fastScoreMapNormalized.put("SIL;SIL", 0.9);
+                        //normalize the substitution counts to a score table
+                        initMapsFromCounts(counts);
 
                     }
 
                 });
     }
 
+    /**
+     * normalizes substitution counts to a score table.
+     * a substitution scores relative to how often the reference phoneme was recognized correctly.
+     *
+     * @param counts number of times the reference phoneme (row) was recognized as the input phoneme (column),
+     *               indexed by ID of reference * NUMBER_OF_PHONEMES + ID of input
+     */
+    private void initMapsFromCounts(long[] counts) {
+        for (int i = 0; i < NUMBER_OF_PHONEMES; i++) {
+            for (int j = 0; j < NUMBER_OF_PHONEMES; j++) {
+                double normalizedScore = 0.1;
+                long count = counts[i * NUMBER_OF_PHONEMES + j];
+                if (count > 0)
+                    normalizedScore = normalizeLinear(0,
+                            counts[i * NUMBER_OF_PHONEMES + i], count, 0.1, 0.9);
+                fastScoreMapNormalized.put(signs[i] + ";" + signs[j],
+                        normalizedScore);
+            }
+        }
+
+        fastScoreMapNormalized.put("SIL;SIL", 0.9);
+    }
+
+    /**
+     * creates a substitutor like GOOGLE_REVERSE from substitution counts, e.g. counted by {@link ConfusionTrainer}
+     *
+     * @param counts number of times the reference phoneme (row) was recognized as the input phoneme (column),
+     *               indexed by ID of reference * NUMBER_OF_PHONEMES + ID of input
+     * @return the substitutor
+     */
+    public static PhonemeSubstitution fromCounts(long[] counts) {
+        if (counts.length != NUMBER_OF_PHONEMES * NUMBER_OF_PHONEMES) {
+            throw new IllegalArgumentException("expected " + NUMBER_OF_PHONEMES + "x" + NUMBER_OF_PHONEMES
+                    + " counts, got " + counts.length);
+        }
+        return new PhonemeSubstitution(counts);
+    }
+
     /**
      * calculates positive distance
      *
@@ -404,6 +553,27 @@ public class PhonemeSubstitution {
         return fastScoreMapNormalized.get(phoneme1 + ";" + phoneme2);
     }
 
+    /**
+     * get the log score comparing two phonemes
+     *
+     * @param phoneme1 ID of the reference (see {@link #getPhonemeId(String)})
+     * @param phoneme2 ID of the input
+     * @return the score in the log domain of Sphinx' LogMath
+     */
+    public float getLogScore(int phoneme1, int phoneme2) {
+        return logScores[phoneme1 * NUMBER_OF_PHONEMES + phoneme2];
+    }
+
+    /**
+     * copies the log scores comparing a phoneme to all phonemes
+     *
+     * @param phoneme1 ID of the reference (see {@link #getPhonemeId(String)})
+     * @param scores   receives the score of every input ID, needs NUMBER_OF_PHONEMES entries
+     */
+    public void getLogScores(int phoneme1, float[] scores) {
+        System.arraycopy(logScores, phoneme1 * NUMBER_OF_PHONEMES, scores, 0, NUMBER_OF_PHONEMES);
+    }
+
     /**
      * calculates the distance between to phonemes based on IPA categories
      *
@@ -0,0 +1,238 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * the pronunciation variants of a single word stored as a directed acyclic graph of phonemes.
+ * node 0 is the root, every other node holds one phoneme and the indices of its parents,
+ * which are always smaller than the node itself. variants share the nodes of their common
+ * prefixes and suffixes, so a distance calculation over all variants visits every shared
+ * phoneme only once and only the phonemes in which the variants differ are visited per variant.
+ */
+public class PronunciationVariants implements Serializable {
+
+    private static final long serialVersionUID = 4164617425335480939L;
+
+    private final String[] symbols;
+    // parents of node n are parents[firstParent[n]] to parents[firstParent[n + 1] - 1]
+    private final int[] firstParent;
+    private final int[] parents;
+    // true if a variant ends at a node
+    private final boolean[] ends;
+    private final int numberOfVariants;
+
+    /**
+     * @param variants phoneme sequences
+     */
+    public PronunciationVariants(List<String[]> variants) {
+        // prefix tree of the variants, children always follow their parent
+        List<String> treeSymbols = new ArrayList<String>();
+        List<Integer> treeParents = new ArrayList<Integer>();
+        List<List<Integer>> treeChildren = new ArrayList<List<Integer>>();
+        List<Boolean> treeEnds = new ArrayList<Boolean>();
+        treeSymbols.add(null);
+        treeParents.add(-1);
+        treeChildren.add(new ArrayList<Integer>());
+        treeEnds.add(false);
+
+        int distinct = 0;
+        for (String[] variant : variants) {
+            int node = 0;
+            for (String p : variant) {
+                node = getOrAddChild(treeSymbols, treeParents, treeChildren, treeEnds, node, p);
+            }
+            if (!treeEnds.get(node)) {
+                treeEnds.set(node, true);
+                distinct++;
+            }
+        }
+
+        // a word without pronunciation is skipped when matching
+        if (variants.isEmpty()) {
+            treeEnds.set(0, true);
+        }
+
+        // merge nodes of equal suffixes bottom-up: same phoneme, same end and same merged children
+        int[] merged = new int[treeSymbols.size()];
+        Map<String, Integer> signatures = new HashMap<String, Integer>();
+        for (int node = treeSymbols.size() - 1; node > 0; node--) {
+            int[] children = new int[treeChildren.get(node).size()];
+            for (int c = 0; c < children.length; c++) {
+                children[c] = merged[treeChildren.get(node).get(c)];
+            }
+            Arrays.sort(children);
+            String signature = treeSymbols.get(node) + " " + treeEnds.get(node) + " " + Arrays.toString(children);
+            Integer equal = signatures.get(signature);
+            if (equal == null) {
+                signatures.put(signature, node);
+                merged[node] = node;
+            } else {
+                merged[node] = equal;
+            }
+        }
+
+        // parents of the merged nodes
+        Map<Integer, Set<Integer>> graphParents = new HashMap<Integer, Set<Integer>>();
+        for (int node = 1; node < merged.length; node++) {
+            Set<Integer> nodeParents = graphParents.get(merged[node]);
+            if (nodeParents == null) {
+                nodeParents = new LinkedHashSet<Integer>();
+                graphParents.put(merged[node], nodeParents);
+            }
+            nodeParents.add(merged[treeParents.get(node)]);
+        }
+
+        // number the merged nodes so every node follows all of its parents
+        int[] order = topologicalOrder(merged, graphParents);
+        int[] index = new int[merged.length];
+        for (int i = 0; i < order.length; i++) {
+            index[order[i]] = i;
+        }
+        symbols = new String[order.length];
+        ends = new boolean[order.length];
+        firstParent = new int[order.length + 1];
+        List<Integer> parentList = new ArrayList<Integer>();
+        for (int i = 0; i < order.length; i++) {
+            symbols[i] = treeSymbols.get(order[i]);
+            ends[i] = treeEnds.get(order[i]);
+            firstParent[i] = parentList.size();
+            if (i > 0) {
+                for (int parent : graphParents.get(order[i])) {
+                    parentList.add(index[parent]);
+                }
+            }
+        }
+        firstParent[order.length] = parentList.size();
+        parents = new int[parentList.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = parentList.get(i);
+        }
+        numberOfVariants = distinct;
+    }
+
+    private static int getOrAddChild(List<String> treeSymbols, List<Integer> treeParents,
+                                     List<List<Integer>> treeChildren, List<Boolean> treeEnds,
+                                     int parent, String symbol) {
+        for (int child : treeChildren.get(parent)) {
+            if (treeSymbols.get(child).equals(symbol)) {
+                return child;
+            }
+        }
+        treeSymbols.add(symbol.intern());
+        treeParents.add(parent);
+        treeChildren.add(new ArrayList<Integer>());
+        treeEnds.add(false);
+        int child = treeSymbols.size() - 1;
+        treeChildren.get(parent).add(child);
+        return child;
+    }
+
+    // the root followed by the merged nodes, each after all of its parents
+    private static int[] topologicalOrder(int[] merged, Map<Integer, Set<Integer>> graphParents) {
+        Map<Integer, List<Integer>> graphChildren = new HashMap<Integer, List<Integer>>();
+        Map<Integer, Integer> pending = new HashMap<Integer, Integer>();
+        for (Map.Entry<Integer, Set<Integer>> entry : graphParents.entrySet()) {
+            pending.put(entry.getKey(), entry.getValue().size());
+            for (int parent : entry.getValue()) {
+                List<Integer> children = graphChildren.get(parent);
+                if (children == null) {
+                    children = new ArrayList<Integer>();
+                    graphChildren.put(parent, children);
+                }
+                children.add(entry.getKey());
+            }
+        }
+
+        int[] order = new int[1 + graphParents.size()];
+        int size = 1;
+        for (int i = 0; i < size; i++) {
+            List<Integer> children = graphChildren.get(order[i]);
+            if (children == null) {
+                continue;
+            }
+            for (int child : children) {
+                int remaining = pending.get(child) - 1;
+                pending.put(child, remaining);
+                if (remaining == 0) {
+                    order[size++] = child;
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * @return number of nodes including the root
+     */
+    public int size() {
+        return symbols.length;
+    }
+
+    /**
+     * @param node index of a node other than the root
+     * @return the phoneme of the node
+     */
+    public String getSymbol(int node) {
+        return symbols[node];
+    }
+
+    /**
+     * @param node index of a node other than the root
+     * @return number of parents of the node
+     */
+    public int getNumberOfParents(int node) {
+        return firstParent[node + 1] - firstParent[node];
+    }
+
+    /**
+     * @param node index of a node other than the root
+     * @param i    number of the parent, smaller than {@link #getNumberOfParents(int)}
+     * @return index of the parent node
+     */
+    public int getParent(int node, int i) {
+        return parents[firstParent[node] + i];
+    }
+
+    /**
+     * @param node index of a node
+     * @return true if a variant ends at the node
+     */
+    public boolean isEnd(int node) {
+        return ends[node];
+    }
+
+    /**
+     * @return number of distinct variants
+     */
+    public int getNumberOfVariants() {
+        return numberOfVariants;
+    }
+}
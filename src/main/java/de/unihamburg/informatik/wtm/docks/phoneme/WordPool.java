@@ -0,0 +1,82 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * process-wide intern pool of the words of loaded grammars. equal words of all sentences are
+ * stored only once. words are only weakly referenced, so they are removed once no grammar uses them anymore.
+ * hypotheses of a recognizer are not interned, they are only used for a single request.
+ */
+public class WordPool {
+
+    private static WordPool instance;
+
+    private final Map<String, WeakReference<String>> words = new WeakHashMap<String, WeakReference<String>>();
+
+    private WordPool() {
+    }
+
+    public static synchronized WordPool getInstance() {
+        if (instance == null) {
+            instance = new WordPool();
+        }
+        return instance;
+    }
+
+    /**
+     * @param word a word
+     * @return an equal word shared by all users of the pool
+     */
+    public synchronized String intern(String word) {
+        WeakReference<String> ref = words.get(word);
+        String shared = ref != null ? ref.get() : null;
+        if (shared == null) {
+            shared = word;
+            words.put(shared, new WeakReference<String>(shared));
+        }
+        return shared;
+    }
+
+    /**
+     * replaces the words by equal words shared by all users of the pool
+     *
+     * @param words words, modified in place
+     * @return the given array
+     */
+    public synchronized String[] intern(String[] words) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = intern(words[i]);
+        }
+        return words;
+    }
+
+    /**
+     * @return number of distinct words currently in the pool
+     */
+    public synchronized int size() {
+        return words.size();
+    }
+}
@@ -21,14 +21,21 @@
  */
 package de.unihamburg.informatik.wtm.docks.postprocessor;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import de.unihamburg.informatik.wtm.docks.data.LevenshteinResult;
 import de.unihamburg.informatik.wtm.docks.data.Result;
+import de.unihamburg.informatik.wtm.docks.phoneme.BulkPhonemeCreator;
+import de.unihamburg.informatik.wtm.docks.phoneme.MappedPhonemeDB;
 import de.unihamburg.informatik.wtm.docks.phoneme.PhonemeContainer;
 import de.unihamburg.informatik.wtm.docks.phoneme.PhonemeCreator;
+import de.unihamburg.informatik.wtm.docks.phoneme.PhonemeDB;
+import de.unihamburg.informatik.wtm.docks.phoneme.PhonemeSequencePool;
+import de.unihamburg.informatik.wtm.docks.phoneme.PronunciationVariants;
 import de.unihamburg.informatik.wtm.docks.postprocessor.levenshteinbased.Levenshtein;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +52,11 @@ public class SentencelistPostProcessor implements PostProcessor {
 
     private PhonemeCreator pc;
     private List<PhonemeContainer> phonemesGrammar;
+    private MappedPhonemeDB mappedGrammar;
+    // pronunciation variants of the words of each sentence, null if not used
+    private PronunciationVariants[][] variantsGrammar;
+    // largest size of the variants of a word, determines the work array of the matching
+    private int maxVariantsSize;
     private int numberOfResults;
 
     /**
@@ -54,19 +66,113 @@ public class SentencelistPostProcessor implements PostProcessor {
      * @param numberOfResults number of results to be returned (1 is fastest)
      */
     public SentencelistPostProcessor(String sentenceFile, int numberOfResults) {
-        LOG.debug("loading phoneme database");
-        pc = new PhonemeCreator(sentenceFile);
+        this(sentenceFile, numberOfResults, false);
+    }
+
+    /**
+     * Creates a new Sentencelist postprocessor which optionally scans a memory-mapped
+     * phoneme data base (sentenceFile + ".phdb") instead of keeping the phonemes on the heap.
+     * The mapped data base is created from the sentence list if it does not exist yet or
+     * was created from another sentence list or G2P model.
+     *
+     * @param sentenceFile    path to list of sentences
+     * @param numberOfResults number of results to be returned (1 is fastest)
+     * @param memoryMapped    true to use a memory-mapped phoneme data base
+     */
+    public SentencelistPostProcessor(String sentenceFile, int numberOfResults, boolean memoryMapped) {
+        if (!memoryMapped) {
+            LOG.debug("loading phoneme database");
+            pc = new PhonemeCreator(sentenceFile);
+            phonemesGrammar = pc.getPhonemeDb().getPhonemes();
+        } else {
+            String mappedFile = sentenceFile + MappedPhonemeDB.EXTENSION;
+            pc = PhonemeCreator.getInstance();
+            // trust the mapped data base if the sentence file is missing, like the phoneme cache does
+            Long contentHash = PhonemeCreator.getContentHash(sentenceFile);
+            try {
+                mappedGrammar = MappedPhonemeDB.open(mappedFile);
+                if (contentHash != null && !mappedGrammar.isUpToDate(pc.getModelVersion(), contentHash)) {
+                    LOG.info("phoneme db {} was created from another sentence list or G2P model, creating new database.",
+                            mappedFile);
+                    mappedGrammar = null;
+                } else {
+                    LOG.info("successfully mapped phoneme db {}", mappedFile);
+                }
+            } catch (IOException e) {
+                LOG.info("failed to map phoneme db {}, creating new database.", mappedFile);
+            }
+            if (mappedGrammar == null) {
+                List<PhonemeContainer> phonemes = new PhonemeCreator(sentenceFile).getPhonemeDb().getPhonemes();
+                try {
+                    MappedPhonemeDB.write(mappedFile, phonemes, pc.getModelVersion(),
+                            contentHash != null ? contentHash : 0);
+                    mappedGrammar = MappedPhonemeDB.open(mappedFile);
+                } catch (IOException e2) {
+                    throw new RuntimeException("failed to create mapped phoneme db " + mappedFile + ", error: " + e2.getMessage());
+                }
+            }
+        }
+        this.numberOfResults = numberOfResults;
+
+        LOG.debug("SentencelistPostProcessor created");
+    }
 
-        LOG.debug("getting phonemes for speech result");
-        phonemesGrammar = pc.getPhonemeDb().getPhonemes();
+    /**
+     * Creates a new Sentencelist postprocessor which matches against the best pronunciation
+     * variants of every word instead of only the best one. A sentence gets the smallest
+     * distance of all combinations of its variants.
+     *
+     * @param sentenceFile     path to list of sentences
+     * @param numberOfResults  number of results to be returned (1 is fastest)
+     * @param numberOfVariants number of pronunciation variants per word
+     */
+    public SentencelistPostProcessor(String sentenceFile, int numberOfResults, int numberOfVariants) {
+        LOG.debug("loading phoneme database");
+        pc = new PhonemeCreator(sentenceFile, numberOfVariants);
+        PhonemeDB pdb = pc.getPhonemeDb();
+        phonemesGrammar = pdb.getPhonemes();
+        if (numberOfVariants > 1) {
+            variantsGrammar = new PronunciationVariants[phonemesGrammar.size()][];
+            for (int i = 0; i < variantsGrammar.length; i++) {
+                variantsGrammar[i] = getVariants(pdb, phonemesGrammar.get(i).getWords());
+                if (variantsGrammar[i] != null) {
+                    for (PronunciationVariants word : variantsGrammar[i]) {
+                        maxVariantsSize = Math.max(maxVariantsSize, word.size());
+                    }
+                }
+            }
+        }
         this.numberOfResults = numberOfResults;
 
         LOG.debug("SentencelistPostProcessor created");
     }
 
+    // returns the variants of all words or null if a word has none
+    private static PronunciationVariants[] getVariants(PhonemeDB pdb, String[] words) {
+        PronunciationVariants[] variants = new PronunciationVariants[words.length];
+        for (int i = 0; i < words.length; i++) {
+            variants[i] = pdb.getVariants(words[i]);
+            if (variants[i] == null) {
+                return null;
+            }
+        }
+        return variants;
+    }
+
+    /**
+     * Creates a new Sentencelist postprocessor for sentences which are converted
+     * to phonemes word by word like the lines of a sentence file
+     *
+     * @param sentences       list of sentences
+     * @param numberOfResults number of results to be returned (1 is fastest)
+     */
     public SentencelistPostProcessor(List<String> sentences, int numberOfResults) {
         pc = PhonemeCreator.getInstance();
-        phonemesGrammar = pc.getPhonemes(sentences);
+        phonemesGrammar = new BulkPhonemeCreator(pc).getPhonemes(sentences.iterator());
+        PhonemeSequencePool pool = PhonemeSequencePool.getInstance();
+        for (PhonemeContainer container : phonemesGrammar) {
+            container.addPhonemesNoJep(pool.intern(container.getPhonemes()));
+        }
         this.numberOfResults = numberOfResults;
     }
 
@@ -81,7 +187,9 @@ public class SentencelistPostProcessor implements PostProcessor {
         List<PhonemeContainer> phonemesSpeech = pc.getPhonemes(r);
         Result result = new Result();
 
-        if (phonemesSpeech != null) {
+        if (phonemesSpeech != null && mappedGrammar != null) {
+            recognizeFromMappedGrammar(phonemesSpeech, result);
+        } else if (phonemesSpeech != null) {
 
             LOG.debug("calculating levenshtein distances");
             LOG.debug("phonemesGrammar.size: {}", phonemesGrammar.size());
@@ -89,8 +197,15 @@ public class SentencelistPostProcessor implements PostProcessor {
             List<LevenshteinResult> resultList = new ArrayList<LevenshteinResult>();
 
             for (PhonemeContainer pSpeech : phonemesSpeech) {
+                int[] rows = variantsGrammar != null
+                        ? new int[(maxVariantsSize + 1) * (pSpeech.getPhonemes().length + 1)] : null;
                 for (int i = 0; i < phonemesGrammar.size(); i++) {
-                    int diff = Levenshtein.diff(pSpeech.getPhonemes(), phonemesGrammar.get(i).getPhonemes());
+                    int diff;
+                    if (variantsGrammar != null && variantsGrammar[i] != null) {
+                        diff = Levenshtein.diff(pSpeech.getPhonemes(), variantsGrammar[i], rows);
+                    } else {
+                        diff = Levenshtein.diff(pSpeech.getPhonemes(), phonemesGrammar.get(i).getPhonemes());
+                    }
                     resultList.add(new LevenshteinResult(diff, i));
                 }
             }
@@ -122,6 +237,65 @@ public class SentencelistPostProcessor implements PostProcessor {
         return result;
     }
 
+    /**
+     * scans the memory-mapped phoneme data base and keeps only the best results,
+     * so no objects are created per grammar entry
+     *
+     * @param phonemesSpeech phonemes of the hypotheses
+     * @param result         the result to fill
+     */
+    private void recognizeFromMappedGrammar(List<PhonemeContainer> phonemesSpeech, Result result) {
+        LOG.debug("calculating levenshtein distances on mapped grammar");
+        LOG.debug("mappedGrammar.size: {}", mappedGrammar.size());
+
+        if (numberOfResults < 1) {
+            return;
+        }
+
+        // best distances and entries sorted by distance, earlier entries win on equal distance
+        int[] bestDistances = new int[numberOfResults];
+        int[] bestEntries = new int[numberOfResults];
+        Arrays.fill(bestDistances, Integer.MAX_VALUE);
+        int found = 0;
+
+        for (PhonemeContainer pSpeech : phonemesSpeech) {
+            int[] encoded = mappedGrammar.encode(pSpeech.getPhonemes());
+            int[] row = new int[encoded.length + 1];
+            for (int i = 0; i < mappedGrammar.size(); i++) {
+                int diff = mappedGrammar.distance(i, encoded, row);
+                if (diff >= bestDistances[numberOfResults - 1]) {
+                    continue;
+                }
+                int j = numberOfResults - 1;
+                while (j > 0 && bestDistances[j - 1] > diff) {
+                    bestDistances[j] = bestDistances[j - 1];
+                    bestEntries[j] = bestEntries[j - 1];
+                    j--;
+                }
+                bestDistances[j] = diff;
+                bestEntries[j] = i;
+                found = Math.min(found + 1, numberOfResults);
+            }
+        }
+
+        for (int i = 0; i < found; i++) {
+            int entry = bestEntries[i];
+            result.addResult(mappedGrammar.getResult(entry));
+
+            if (i == 0) {
+                // calculate confidence for best result based on LD & phoneme length
+                final int resultPhonemeLength = mappedGrammar.getPhonemeCount(entry);
+                final int phonemeDistance = bestDistances[i];
+                final float confidence = Math.max(0, (1 - ((float) phonemeDistance) / (float) resultPhonemeLength));
+
+                LOG.info("Best result: {} (LD: {}, confidence: {})", mappedGrammar.getResult(entry), phonemeDistance, confidence);
+
+                result.setConfidence(confidence);
+                result.setRawResult(mappedGrammar.getRawResult(entry));
+            }
+        }
+    }
+
     /**
      * calculate distances of an input vs an array of strings
      *
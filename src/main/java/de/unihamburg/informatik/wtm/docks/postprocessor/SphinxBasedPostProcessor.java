@@ -22,15 +22,32 @@
 package de.unihamburg.informatik.wtm.docks.postprocessor;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import de.unihamburg.informatik.wtm.docks.data.Result;
+import de.unihamburg.informatik.wtm.docks.data.WordLattice;
 import de.unihamburg.informatik.wtm.docks.frontend.PhoneFrontEnd;
 import de.unihamburg.informatik.wtm.docks.phoneme.PhonemeContainer;
 import de.unihamburg.informatik.wtm.docks.phoneme.PhonemeCreator;
+import de.unihamburg.informatik.wtm.docks.phoneme.PhonemeSubstitution;
+import de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased.AcousticModelRegistry;
+import de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased.AdaptiveActiveListFactory;
+import de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased.OurDynamicFlatLinguist;
+import de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased.SharedConfiguration;
+import de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased.WordLattices;
+import de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased.WordPath;
 import edu.cmu.sphinx.decoder.search.Token;
+import edu.cmu.sphinx.linguist.dictionary.Dictionary;
+import edu.cmu.sphinx.linguist.language.grammar.Grammar;
 import edu.cmu.sphinx.recognizer.Recognizer;
 import edu.cmu.sphinx.util.props.ConfigurationManager;
 import org.slf4j.Logger;
@@ -46,10 +63,42 @@ public class SphinxBasedPostProcessor implements PostProcessor {
     private static final String NAME = "PhonemeNgramRecognizer";
 
     private ConfigurationManager cm;
-    private Recognizer recognizer;
+    // decoders not in use, waiting threads are served in order
+    private BlockingQueue<Decoder> decoders;
+    // all decoders, also the ones in use
+    private final List<Decoder> allDecoders = new ArrayList<Decoder>();
+    // allocates and compiles swapped grammars
+    private ExecutorService grammarCompiler;
 
     private PhonemeCreator pc;
-    private PhoneFrontEnd pfe;
+    private volatile boolean buildLattice;
+
+    /**
+     * a recognizer with its own front end, decoding one utterance at a time
+     */
+    private static final class Decoder {
+
+        final Recognizer recognizer;
+        final PhoneFrontEnd pfe;
+        final WordPath path = new WordPath();
+        // adaptive beams of the search, if configured
+        final List<AdaptiveActiveListFactory> beams = new ArrayList<AdaptiveActiveListFactory>();
+        // linguists whose grammar can be swapped
+        final List<OurDynamicFlatLinguist> linguists = new ArrayList<OurDynamicFlatLinguist>();
+
+        Decoder(ConfigurationManager cm, int substitutionMethod) {
+            pfe = (PhoneFrontEnd) cm.lookup("frontend");
+            pfe.setSubstitutionMethod(substitutionMethod);
+            recognizer = (Recognizer) cm.lookup("recognizer");
+            recognizer.allocate();
+            for (String name : cm.getInstanceNames(AdaptiveActiveListFactory.class)) {
+                beams.add((AdaptiveActiveListFactory) cm.lookup(name));
+            }
+            for (String name : cm.getInstanceNames(OurDynamicFlatLinguist.class)) {
+                linguists.add((OurDynamicFlatLinguist) cm.lookup(name));
+            }
+        }
+    }
 
     /**
      * creates a new sphinx based postprocessor
@@ -61,6 +110,21 @@ public class SphinxBasedPostProcessor implements PostProcessor {
      * @param substitutionMethod       parameter used internally, but 0 here if you don't know what you are doing
      */
     public SphinxBasedPostProcessor(String configName, String sentenceFile, float languageWeight, float wordInsertionProbability, int substitutionMethod) {
+        this(configName, sentenceFile, languageWeight, wordInsertionProbability, substitutionMethod, 1);
+    }
+
+    /**
+     * creates a new sphinx based postprocessor able to postprocess several results at the same time.
+     * every decoder has its own recognizer and front end, acoustic model, dictionary and grammar are shared.
+     *
+     * @param configName               name of the config. this is used as a prefix for all xml config, languague model, sentence list word list files etc.
+     * @param sentenceFile             path to list of sentences
+     * @param languageWeight           parameter used internally, but 0 here if you don't know what you are doing
+     * @param wordInsertionProbability parameter used internally, but 0 here if you don't know what you are doing
+     * @param substitutionMethod       parameter used internally, but 0 here if you don't know what you are doing
+     * @param numberOfDecoders         number of results postprocessed at the same time
+     */
+    public SphinxBasedPostProcessor(String configName, String sentenceFile, float languageWeight, float wordInsertionProbability, int substitutionMethod, int numberOfDecoders) {
         try {
             // load config xml
             cm = new ConfigurationManager(new File(configName).toURI().toURL());
@@ -77,12 +141,21 @@ public class SphinxBasedPostProcessor implements PostProcessor {
 
         LOG.debug("LW: {} WIP: {}", getLanguageWeight(), getWIP());
 
-        // initialize frontend, recognizer and phoneme creator
-        pfe = (PhoneFrontEnd) cm.lookup("frontend");
-        pfe.setSubstitutionMethod(substitutionMethod);
+        // load acoustic models only once per process
+        AcousticModelRegistry.getInstance().share(cm);
 
-        recognizer = (Recognizer) cm.lookup("recognizer");
-        recognizer.allocate();
+        // build the score table now instead of on the first request
+        PhonemeSubstitution.initialize(substitutionMethod);
+
+        // initialize frontends, recognizers and phoneme creator
+        numberOfDecoders = Math.max(1, numberOfDecoders);
+        decoders = new ArrayBlockingQueue<Decoder>(numberOfDecoders, true);
+        allDecoders.add(new Decoder(cm, substitutionMethod));
+        for (int i = 1; i < numberOfDecoders; i++) {
+            allDecoders.add(new Decoder(SharedConfiguration.copy(cm, SharedConfiguration.READ_ONLY_TYPES), substitutionMethod));
+        }
+        decoders.addAll(allDecoders);
+        LOG.debug("{} decoders allocated", numberOfDecoders);
         pc = new PhonemeCreator(sentenceFile);
     }
 
@@ -100,6 +173,87 @@ public class SphinxBasedPostProcessor implements PostProcessor {
         return Float.parseFloat(cm.getGlobalProperty("wordInsertionProbability"));
     }
 
+    /**
+     * @param buildLattice true to add a word lattice and a confusion network to every result, from which
+     *                     n-best lists and posteriors for other language weights can be derived without decoding again
+     */
+    public void setBuildLattice(boolean buildLattice) {
+        this.buildLattice = buildLattice;
+    }
+
+    /**
+     * @return the dictionary of the current grammar, e.g. to create another grammar for {@link #swapGrammar(Grammar)}
+     */
+    public Dictionary getDictionary() {
+        for (OurDynamicFlatLinguist linguist : allDecoders.get(0).linguists) {
+            if (linguist.getGrammar() != null) {
+                return linguist.getGrammar().getDictionary();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * replaces the grammar or language model by another grammar component of the config, e.g. ngramGrammar
+     *
+     * @param grammarName name of the grammar component
+     * @return the future of {@link #swapGrammar(Grammar)}
+     */
+    public Future<Grammar> swapGrammar(String grammarName) {
+        Object grammar = cm.lookup(grammarName);
+        if (!(grammar instanceof Grammar)) {
+            throw new RuntimeException("config " + cm.getConfigURL() + " has no grammar " + grammarName);
+        }
+        return swapGrammar((Grammar) grammar);
+    }
+
+    /**
+     * replaces the grammar or language model of all decoders without allocating the recognizers again.
+     * the grammar is allocated and compiled in the background and used for all results postprocessed
+     * after the returned future is done. results postprocessed at the moment are finished with the old grammar.
+     *
+     * @param grammar grammar using the dictionary of this postprocessor, allocated or not
+     * @return future done when the grammar is ready, throwing an ExecutionException if it failed to allocate
+     */
+    public Future<Grammar> swapGrammar(final Grammar grammar) {
+        return getGrammarCompiler().submit(new Callable<Grammar>() {
+            @Override
+            public Grammar call() {
+                if (grammar.getInitialNode() == null) {
+                    try {
+                        grammar.allocate();
+                    } catch (IOException e) {
+                        throw new RuntimeException("failed to allocate grammar " + grammar + ", error: " + e.getMessage());
+                    }
+                }
+                // the grammar is the same for all decoders, so its unit maps and state IDs are compiled once
+                OurDynamicFlatLinguist.SwappedGrammar swapped = OurDynamicFlatLinguist.compileSwappedGrammar(grammar);
+                for (Decoder decoder : allDecoders) {
+                    for (OurDynamicFlatLinguist linguist : decoder.linguists) {
+                        linguist.swapGrammar(swapped);
+                    }
+                }
+                LOG.debug("swapped grammar {}", grammar);
+                return grammar;
+            }
+        });
+    }
+
+    // grammars are compiled one after another, the thread does not keep the process alive
+    private synchronized ExecutorService getGrammarCompiler() {
+        if (grammarCompiler == null) {
+            grammarCompiler = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "grammar-compiler");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return grammarCompiler;
+    }
+
     /**
      * postprocesses the results of an ASR
      *
@@ -113,57 +267,75 @@ public class SphinxBasedPostProcessor implements PostProcessor {
         // get best result
         String[] phonemes = phonemesSpeech.get(0).getPhonemes();
 
+        Decoder decoder = checkout();
+        try {
+            return recognize(decoder, phonemes);
+        } finally {
+            decoders.add(decoder);
+        }
+    }
+
+    private Decoder checkout() {
+        try {
+            return decoders.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for a decoder");
+        }
+    }
+
+    private Result recognize(Decoder decoder, String[] phonemes) {
         // ad to phone frontend
-        pfe.addPhonemes(phonemes);
+        decoder.pfe.addPhonemes(phonemes);
+        for (AdaptiveActiveListFactory beam : decoder.beams) {
+            beam.startUtterance(PhoneFrontEnd.getNumberOfFrames(phonemes.length));
+        }
 
         // start postprocessing
-        r = null;
+        Result r = null;
+        String refPhoneme = null;
+        WordPath path = decoder.path;
         edu.cmu.sphinx.result.Result result;
-        while ((result = recognizer.recognize()) != null) {
+        while ((result = decoder.recognizer.recognize()) != null) {
             if (r == null) {
                 r = new Result();
+                refPhoneme = path.join(phonemes);
             }
 
-            String refPhoneme = "";
-            for (String s : phonemes) {
-                refPhoneme = refPhoneme + s + " ";
-            }
-
-            // get phoneme sequence of hypotheses
-            String[] s2 = result.getBestPronunciationResult().split(" ");
-            Pattern p = Pattern.compile(".*\\[(.*)\\]");
-
-            String hypPhoneme = "";
-            // get phonemes for hypotheses phoneme sequence
-            for (String s : s2) {
-                Matcher m = p.matcher(s);
-                if (m.find()) {
-                    String[] s3 = m.group(1).split(",");
-                    for (String s4 : s3)
-                        hypPhoneme = hypPhoneme + s4 + " ";
-                }
-            }
+            // words and phonemes are read from the tokens, not parsed from the strings of the result
+            List<Token> tokens = result.getResultTokens();
+            path.read(WordPath.getBest(tokens));
 
             // set the phoneme sequences in the result
             r.setRefPhoneme(refPhoneme);
-            r.setHypPhoneme(hypPhoneme);
+            r.setHypPhoneme(path.getUnits());
 
             // get best result
-            String resultText = result.getBestFinalResultNoFiller();
-            if ("".equals(resultText)) {
+            if (path.size() == 0) {
                 return null;
             }
-            r.addResult(resultText);
+            r.addResult(path.getWords());
 
             // add rest to 10-best list
             int i = 0;
-            for (Token t : result.getResultTokens()) {
+            for (Token t : tokens) {
                 if (i >= 9) {
                     break;
                 }
-                r.addResult(t.getWordPathNoFiller());
+                r.addResult(path.read(t).getWords());
                 i++;
             }
+
+            if (buildLattice) {
+                WordLattice lattice = WordLattices.fromResult(result);
+                r.setLattice(lattice);
+                r.setConfusionNetwork(lattice.toConfusionNetwork(1));
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            for (AdaptiveActiveListFactory beam : decoder.beams) {
+                LOG.debug("beam: {}", beam);
+            }
         }
         return r;
     }
@@ -21,6 +21,11 @@
  */
 package de.unihamburg.informatik.wtm.docks.postprocessor.levenshteinbased;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import de.unihamburg.informatik.wtm.docks.phoneme.PronunciationVariants;
+
 /**
  * origin: http://www.java-blog-buch.de/c-levenshtein-distanz/
  * modified by Johannes Twiefel
@@ -77,4 +82,127 @@ public class Levenshtein {
         // return the bottom right value as minimal distance.
         return matrix[reference.length][input.length];
     }
+
+    /**
+     * calculates Levenshtein distance between an array of symbol IDs and a sequence of
+     * symbol IDs (one unsigned byte each) stored in a buffer. only a single row of the
+     * matrix is kept, so the buffer can be scanned without allocating.
+     *
+     * @param reference symbol IDs
+     * @param input     buffer containing the input symbols
+     * @param offset    absolute position of the first input symbol
+     * @param length    number of input symbols
+     * @param row       work array of at least reference.length + 1 elements
+     * @return minimal distance
+     */
+    public static int diff(int[] reference, ByteBuffer input, int offset, int length, int[] row) {
+        for (int b = 0; b < reference.length + 1; b++) {
+            row[b] = b;
+        }
+        for (int a = 1; a < length + 1; a++) {
+            int symbol = input.get(offset + a - 1) & 0xff;
+            // value of the cell diagonal to the one to fill
+            int diagonal = row[0];
+            row[0] = a;
+            for (int b = 1; b < reference.length + 1; b++) {
+                int above = row[b];
+                int mini = above + 1;
+                if (row[b - 1] + 1 < mini) {
+                    mini = row[b - 1] + 1;
+                }
+                int right = reference[b - 1] == symbol ? 0 : 1;
+                if (diagonal + right < mini) {
+                    mini = diagonal + right;
+                }
+                row[b] = mini;
+                diagonal = above;
+            }
+        }
+        return row[reference.length];
+    }
+
+    /**
+     * calculates the smallest Levenshtein distance between an array of symbols and any
+     * sentence that can be built from the pronunciation variants of its words.
+     * variants of a word share the rows of their common prefixes and suffixes and the rows at
+     * the end of each word are merged, so the work grows with the number of distinct phonemes
+     * per word instead of the number of combinations.
+     *
+     * @param reference symbols
+     * @param words     pronunciation variants of each word of the sentence
+     * @return minimal distance
+     */
+    public static int diff(String[] reference, PronunciationVariants[] words) {
+        int size = 0;
+        for (PronunciationVariants word : words) {
+            size = Math.max(size, word.size());
+        }
+        return diff(reference, words, new int[(size + 1) * (reference.length + 1)]);
+    }
+
+    /**
+     * calculates the smallest Levenshtein distance between an array of symbols and any
+     * sentence that can be built from the pronunciation variants of its words.
+     * the work array can be reused for all sentences compared to the same symbols.
+     *
+     * @param reference symbols
+     * @param words     pronunciation variants of each word of the sentence
+     * @param rows      work array of at least (n + 1) * (reference.length + 1) elements,
+     *                  n being the largest size of the words
+     * @return minimal distance
+     */
+    public static int diff(String[] reference, PronunciationVariants[] words, int[] rows) {
+        int columns = reference.length + 1;
+        // the row of the root is the row at the current word boundary
+        for (int b = 0; b < columns; b++) {
+            rows[b] = b;
+        }
+
+        for (PronunciationVariants word : words) {
+            int nodes = word.size();
+            for (int node = 1; node < nodes; node++) {
+                String symbol = word.getSymbol(node);
+                int current = node * columns;
+                // deletions and substitutions continue from the best parent
+                for (int p = 0; p < word.getNumberOfParents(node); p++) {
+                    int above = word.getParent(node, p) * columns;
+                    if (p == 0 || rows[above] + 1 < rows[current]) {
+                        rows[current] = rows[above] + 1;
+                    }
+                    for (int b = 1; b < columns; b++) {
+                        int mini = rows[above + b] + 1;
+                        int right = symbol.equals(reference[b - 1]) ? 0 : 1;
+                        if (rows[above + b - 1] + right < mini) {
+                            mini = rows[above + b - 1] + right;
+                        }
+                        if (p == 0 || mini < rows[current + b]) {
+                            rows[current + b] = mini;
+                        }
+                    }
+                }
+                // insertions continue within the row
+                for (int b = 1; b < columns; b++) {
+                    if (rows[current + b - 1] + 1 < rows[current + b]) {
+                        rows[current + b] = rows[current + b - 1] + 1;
+                    }
+                }
+            }
+
+            // the next word continues from the best variant for every column
+            int boundary = nodes * columns;
+            Arrays.fill(rows, boundary, boundary + columns, Integer.MAX_VALUE);
+            for (int node = 0; node < nodes; node++) {
+                if (word.isEnd(node)) {
+                    int current = node * columns;
+                    for (int b = 0; b < columns; b++) {
+                        if (rows[current + b] < rows[boundary + b]) {
+                            rows[boundary + b] = rows[current + b];
+                        }
+                    }
+                }
+            }
+            System.arraycopy(rows, boundary, rows, 0, columns);
+        }
+        return rows[reference.length];
+    }
 }
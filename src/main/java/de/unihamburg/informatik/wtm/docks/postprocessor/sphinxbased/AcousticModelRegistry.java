@@ -0,0 +1,289 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import edu.cmu.sphinx.linguist.acoustic.AcousticModel;
+import edu.cmu.sphinx.linguist.acoustic.Context;
+import edu.cmu.sphinx.linguist.acoustic.HMM;
+import edu.cmu.sphinx.linguist.acoustic.HMMPosition;
+import edu.cmu.sphinx.linguist.acoustic.Unit;
+import edu.cmu.sphinx.linguist.acoustic.UnitManager;
+import edu.cmu.sphinx.linguist.acoustic.tiedstate.TiedStateAcousticModel;
+import edu.cmu.sphinx.util.props.Configurable;
+import edu.cmu.sphinx.util.props.ConfigurationManager;
+import edu.cmu.sphinx.util.props.PropertyException;
+import edu.cmu.sphinx.util.props.PropertySheet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * shares the acoustic models of all Sphinx configurations of the process. every model is loaded once per location
+ * and configuration, together with its unit manager, and released when the last component using it is deallocated.
+ * models of the same location configured differently, e.g. with another loader or other units, are not shared.
+ */
+public final class AcousticModelRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AcousticModelRegistry.class);
+    private static AcousticModelRegistry instance;
+
+    // shared models by location and hash of their configuration
+    private final Map<String, SharedAcousticModel> models = new HashMap<String, SharedAcousticModel>();
+
+    private AcousticModelRegistry() {
+    }
+
+    /**
+     * @return the registry of the process
+     */
+    public static synchronized AcousticModelRegistry getInstance() {
+        if (instance == null) {
+            instance = new AcousticModelRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * lets the acoustic models of a configuration and their unit managers be shared with other configurations.
+     * models of a location and configuration already registered replace the models of the configuration,
+     * the others are registered.
+     * has to be called before the components using the models are looked up.
+     *
+     * @param cm configuration of a recognizer or postprocessor
+     */
+    public synchronized void share(ConfigurationManager cm) {
+        // the keys are taken before the components are changed while replacing the models
+        Map<String, String> keys = new LinkedHashMap<String, String>();
+        for (String name : new ArrayList<String>(cm.getComponentNames())) {
+            PropertySheet ps = cm.getPropertySheet(name);
+            if (ps == null || !AcousticModel.class.isAssignableFrom(ps.getConfigurableClass())
+                    || ps.getConfigurableClass() == SharedAcousticModel.class) {
+                continue;
+            }
+            String location = getLocation(cm, ps);
+            if (location == null) {
+                LOG.debug("acoustic model {} has no location and is not shared", name);
+                continue;
+            }
+            keys.put(name, location + "#" + Long.toHexString(CompiledSearchGraph.hashConfiguration(cm, name)));
+        }
+
+        for (Map.Entry<String, String> entry : keys.entrySet()) {
+            String name = entry.getKey();
+            String key = entry.getValue();
+            PropertySheet ps = cm.getPropertySheet(name);
+            String unitManagerName = getComponentName(cm, ps, TiedStateAcousticModel.PROP_UNIT_MANAGER);
+
+            SharedAcousticModel model = models.get(key);
+            if (model == null) {
+                // the unit manager is used by the dictionaries of all configurations, also while loading the model
+                UnitManager unitManager = null;
+                if (unitManagerName != null) {
+                    unitManager = new SynchronizedUnitManager();
+                    replace(cm, unitManagerName, unitManager);
+                }
+                model = new SharedAcousticModel(key, (AcousticModel) cm.lookup(name), unitManager);
+                models.put(key, model);
+                LOG.debug("registered acoustic model {}", key);
+            } else {
+                // units of the shared model have the IDs of its unit manager
+                if (unitManagerName != null && model.unitManager != null) {
+                    replace(cm, unitManagerName, model.unitManager);
+                }
+                LOG.debug("sharing acoustic model {}", key);
+            }
+            replace(cm, name, model);
+        }
+    }
+
+    /**
+     * @return number of models registered
+     */
+    public synchronized int size() {
+        return models.size();
+    }
+
+    private synchronized void register(SharedAcousticModel model) {
+        if (!models.containsKey(model.key)) {
+            models.put(model.key, model);
+        }
+    }
+
+    private synchronized void unregister(SharedAcousticModel model) {
+        if (models.get(model.key) == model) {
+            models.remove(model.key);
+            LOG.debug("released acoustic model {}", model.key);
+        }
+    }
+
+    // the location of the model or of its loader
+    private static String getLocation(ConfigurationManager cm, PropertySheet ps) {
+        Object location = getRaw(ps, AcousticModel.PROP_LOCATION);
+        String loader = getComponentName(cm, ps, TiedStateAcousticModel.PROP_LOADER);
+        if (location == null && loader != null && cm.getPropertySheet(loader) != null) {
+            location = getRaw(cm.getPropertySheet(loader), AcousticModel.PROP_LOCATION);
+        }
+        return location != null ? SharedConfiguration.resolve(cm, location.toString()) : null;
+    }
+
+    private static String getComponentName(ConfigurationManager cm, PropertySheet ps, String property) {
+        Object raw = getRaw(ps, property);
+        return raw instanceof String ? SharedConfiguration.resolve(cm, (String) raw) : null;
+    }
+
+    private static Object getRaw(PropertySheet ps, String property) {
+        return ps.getRegisteredProperties().contains(property) ? ps.getRaw(property) : null;
+    }
+
+    private static void replace(ConfigurationManager cm, String name, Configurable component) {
+        cm.removeConfigurable(name);
+        cm.addConfigurable(component, name);
+    }
+
+    /**
+     * an acoustic model used by several configurations, allocated by the first and released by the last user
+     */
+    static final class SharedAcousticModel implements AcousticModel {
+
+        // location and hash of the configuration
+        private final String key;
+        private final AcousticModel model;
+        private final UnitManager unitManager;
+        private int users;
+
+        SharedAcousticModel(String key, AcousticModel model, UnitManager unitManager) {
+            this.key = key;
+            this.model = model;
+            this.unitManager = unitManager;
+        }
+
+        @Override
+        public void newProperties(PropertySheet ps) throws PropertyException {
+            // configured by the configuration registering the model
+        }
+
+        @Override
+        public synchronized void allocate() throws IOException {
+            if (users == 0) {
+                model.allocate();
+                // registered again if it has been released before
+                getInstance().register(this);
+            }
+            users++;
+        }
+
+        @Override
+        public synchronized void deallocate() {
+            if (users == 0) {
+                return;
+            }
+            users--;
+            if (users == 0) {
+                model.deallocate();
+                getInstance().unregister(this);
+            }
+        }
+
+        /**
+         * @return number of components that allocated the model and did not deallocate it yet
+         */
+        synchronized int getUsers() {
+            return users;
+        }
+
+        /**
+         * @return the model loaded from the location
+         */
+        AcousticModel getModel() {
+            return model;
+        }
+
+        @Override
+        public String getName() {
+            return model.getName();
+        }
+
+        @Override
+        public HMM lookupNearestHMM(Unit unit, HMMPosition position, boolean exactMatch) {
+            return model.lookupNearestHMM(unit, position, exactMatch);
+        }
+
+        @Override
+        public Iterator<HMM> getHMMIterator() {
+            return model.getHMMIterator();
+        }
+
+        @Override
+        public Iterator<Unit> getContextIndependentUnitIterator() {
+            return model.getContextIndependentUnitIterator();
+        }
+
+        @Override
+        public int getLeftContextSize() {
+            return model.getLeftContextSize();
+        }
+
+        @Override
+        public int getRightContextSize() {
+            return model.getRightContextSize();
+        }
+
+        @Override
+        public Properties getProperties() {
+            return model.getProperties();
+        }
+
+        @Override
+        public String toString() {
+            return key + " (" + getUsers() + " users)";
+        }
+    }
+
+    /**
+     * a unit manager used by several threads, e.g. loading a model and a dictionary at the same time
+     */
+    private static final class SynchronizedUnitManager extends UnitManager {
+
+        @Override
+        public synchronized Unit getUnit(String name, boolean filler, Context context) {
+            return super.getUnit(name, filler, context);
+        }
+
+        @Override
+        public synchronized Unit getUnit(String name, boolean filler) {
+            return super.getUnit(name, filler);
+        }
+
+        @Override
+        public synchronized Unit getUnit(String name) {
+            return super.getUnit(name);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import edu.cmu.sphinx.decoder.scorer.Scoreable;
+import edu.cmu.sphinx.decoder.search.ActiveList;
+import edu.cmu.sphinx.decoder.search.ActiveListFactory;
+import edu.cmu.sphinx.decoder.search.Token;
+import edu.cmu.sphinx.util.props.PropertyException;
+import edu.cmu.sphinx.util.props.PropertySheet;
+import edu.cmu.sphinx.util.props.S4Double;
+import edu.cmu.sphinx.util.props.S4Integer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * creates active lists whose size is adapted every frame.
+ * the width of the next frame follows the number of tokens scoring close to the best token: a clear best
+ * hypothesis needs a narrow beam, many competing hypotheses a wide one. if a latency budget is set, the width
+ * is also limited to the number of tokens which can be scored in the time left for the remaining frames.
+ * the absolute beam width is the maximal width.
+ * <p/>
+ * a factory keeps the state of the utterance being decoded, so every decoder needs its own factory.
+ * the expected number of frames and the start of the budget are set by {@link #startUtterance(int)}.
+ */
+public class AdaptiveActiveListFactory extends ActiveListFactory {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveActiveListFactory.class);
+
+    /**
+     * The property for the minimal number of tokens kept every frame.
+     */
+    @S4Integer(defaultValue = 50)
+    public final static String PROP_MINIMUM_BEAM_WIDTH = "minimumBeamWidth";
+
+    /**
+     * The property for the relative score of tokens counted as competing with the best token.
+     */
+    @S4Double(defaultValue = 1E-10)
+    public final static String PROP_SPREAD_BEAM_WIDTH = "spreadBeamWidth";
+
+    /**
+     * The property for the factor of the number of competing tokens kept in the next frame.
+     */
+    @S4Double(defaultValue = 2.0)
+    public final static String PROP_HEADROOM = "headroom";
+
+    /**
+     * The property for the time in milliseconds an utterance may take, 0 for no limit.
+     */
+    @S4Integer(defaultValue = 0)
+    public final static String PROP_LATENCY_BUDGET = "latencyBudget";
+
+    private int minimumBeamWidth;
+    private float logSpreadBeamWidth;
+    private double headroom;
+    private long latencyBudget;
+
+    // state of the current utterance
+    private int width;
+    private int expectedFrames;
+    private long start;
+    private long lastPurge;
+
+    // statistics of the current utterance
+    private int frames;
+    private long widthSum;
+    private double occupancySum;
+    private int saturatedFrames;
+    private int budgetLimitedFrames;
+
+    public AdaptiveActiveListFactory(int absoluteBeamWidth, double relativeBeamWidth, int minimumBeamWidth,
+                                     double spreadBeamWidth, double headroom, long latencyBudget) {
+        super(absoluteBeamWidth, relativeBeamWidth);
+        this.minimumBeamWidth = minimumBeamWidth;
+        this.logSpreadBeamWidth = logMath.linearToLog(spreadBeamWidth);
+        this.headroom = headroom;
+        this.latencyBudget = latencyBudget;
+        startUtterance(0);
+    }
+
+    public AdaptiveActiveListFactory() {
+    }
+
+    @Override
+    public void newProperties(PropertySheet ps) throws PropertyException {
+        super.newProperties(ps);
+        minimumBeamWidth = ps.getInt(PROP_MINIMUM_BEAM_WIDTH);
+        logSpreadBeamWidth = logMath.linearToLog(ps.getDouble(PROP_SPREAD_BEAM_WIDTH));
+        headroom = ps.getDouble(PROP_HEADROOM);
+        latencyBudget = ps.getInt(PROP_LATENCY_BUDGET);
+        startUtterance(0);
+    }
+
+    /**
+     * resets the beam and statistics and starts the latency budget
+     *
+     * @param expectedFrames number of frames of the utterance, 0 if unknown
+     */
+    public void startUtterance(int expectedFrames) {
+        if (frames > 0) {
+            LOG.debug("beam of the last utterance: {}", this);
+        }
+        this.expectedFrames = expectedFrames;
+        width = getMaximumWidth();
+        start = System.nanoTime();
+        lastPurge = start;
+        frames = 0;
+        widthSum = 0;
+        occupancySum = 0;
+        saturatedFrames = 0;
+        budgetLimitedFrames = 0;
+    }
+
+    @Override
+    public ActiveList newInstance() {
+        return new AdaptiveActiveList(width);
+    }
+
+    private int getMaximumWidth() {
+        return absoluteBeamWidth > 0 ? absoluteBeamWidth : Integer.MAX_VALUE;
+    }
+
+    /**
+     * adapts the width of the next frame to the frame just purged
+     *
+     * @param size        number of tokens of the frame before purging
+     * @param competitors number of tokens close to the best token
+     */
+    void update(int size, int competitors) {
+        long now = System.nanoTime();
+        long frameTime = now - lastPurge;
+        lastPurge = now;
+
+        frames++;
+        widthSum += width;
+        occupancySum += Math.min(size, width) / (double) width;
+        if (size > width) {
+            saturatedFrames++;
+        }
+
+        long next = Math.max((long) Math.ceil(competitors * headroom), minimumBeamWidth);
+        if (latencyBudget > 0 && size > 0) {
+            long left = start + latencyBudget * 1000000L - now;
+            int framesLeft = Math.max(1, expectedFrames - frames);
+            // time of a token measured in the last frame
+            double tokenTime = Math.max(1, frameTime) / (double) size;
+            long affordable = left > 0 ? (long) (left / framesLeft / tokenTime) : 0;
+            if (affordable < next) {
+                next = affordable;
+                budgetLimitedFrames++;
+            }
+        }
+        width = (int) Math.min(Math.max(next, minimumBeamWidth), getMaximumWidth());
+    }
+
+    /**
+     * @return width of the next frame
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return number of frames of the current utterance
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return average width of the frames of the current utterance
+     */
+    public double getAverageWidth() {
+        return frames == 0 ? 0 : widthSum / (double) frames;
+    }
+
+    /**
+     * @return average share of the beam filled with tokens, between 0 and 1
+     */
+    public double getAverageOccupancy() {
+        return frames == 0 ? 0 : occupancySum / frames;
+    }
+
+    /**
+     * @return number of frames with more tokens than fit into the beam
+     */
+    public int getSaturatedFrames() {
+        return saturatedFrames;
+    }
+
+    /**
+     * @return number of frames whose successor was narrowed to keep the latency budget
+     */
+    public int getBudgetLimitedFrames() {
+        return budgetLimitedFrames;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d frames, average width: %.1f, average occupancy: %.2f, saturated: %d, "
+                        + "limited by budget: %d", frames, getAverageWidth(), getAverageOccupancy(), saturatedFrames,
+                budgetLimitedFrames);
+    }
+
+    /**
+     * active list of one frame, like the one of SimpleActiveListFactory
+     */
+    class AdaptiveActiveList implements ActiveList {
+
+        private final int absoluteBeamWidth;
+        private Token bestToken;
+        private List<Token> tokenList = new ArrayList<Token>();
+
+        AdaptiveActiveList(int absoluteBeamWidth) {
+            this.absoluteBeamWidth = absoluteBeamWidth;
+        }
+
+        @Override
+        public void add(Token token) {
+            tokenList.add(token);
+            if (bestToken == null || token.getScore() > bestToken.getScore()) {
+                bestToken = token;
+            }
+        }
+
+        @Override
+        public void replace(Token oldToken, Token newToken) {
+            add(newToken);
+            if (oldToken != null) {
+                tokenList.remove(oldToken);
+            }
+        }
+
+        @Override
+        public ActiveList purge() {
+            int competitors = 0;
+            if (bestToken != null) {
+                float threshold = bestToken.getScore() + logSpreadBeamWidth;
+                for (Token token : tokenList) {
+                    if (token.getScore() >= threshold) {
+                        competitors++;
+                    }
+                }
+            }
+            int size = tokenList.size();
+            if (size > absoluteBeamWidth) {
+                Collections.sort(tokenList, Scoreable.COMPARATOR);
+                tokenList = tokenList.subList(0, absoluteBeamWidth);
+            }
+            update(size, competitors);
+            return this;
+        }
+
+        @Override
+        public Iterator<Token> iterator() {
+            return tokenList.iterator();
+        }
+
+        @Override
+        public List<Token> getTokens() {
+            return tokenList;
+        }
+
+        @Override
+        public int size() {
+            return tokenList.size();
+        }
+
+        @Override
+        public float getBeamThreshold() {
+            return getBestScore() + logRelativeBeamWidth;
+        }
+
+        @Override
+        public float getBestScore() {
+            return bestToken == null ? -Float.MAX_VALUE : bestToken.getScore();
+        }
+
+        @Override
+        public void setBestToken(Token token) {
+            bestToken = token;
+        }
+
+        @Override
+        public Token getBestToken() {
+            return bestToken;
+        }
+
+        @Override
+        public ActiveList newInstance() {
+            return AdaptiveActiveListFactory.this.newInstance();
+        }
+    }
+}
@@ -0,0 +1,508 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.cmu.sphinx.linguist.acoustic.Unit;
+import edu.cmu.sphinx.linguist.acoustic.UnitManager;
+import edu.cmu.sphinx.linguist.dictionary.Pronunciation;
+import edu.cmu.sphinx.linguist.dictionary.Word;
+import edu.cmu.sphinx.linguist.language.grammar.GrammarArc;
+import edu.cmu.sphinx.linguist.language.grammar.GrammarNode;
+import edu.cmu.sphinx.util.props.ConfigurationManager;
+import edu.cmu.sphinx.util.props.ConfigurationManagerUtils;
+import edu.cmu.sphinx.util.props.PropertySheet;
+import edu.cmu.sphinx.util.props.PropertyType;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * serialized grammar of {@link OurDynamicFlatLinguist}, compiled offline.
+ * the file holds the grammar nodes with their arcs, the words and pronunciations of the nodes as unit IDs and the
+ * units following every node. loading it saves parsing the grammar, looking up the dictionary and computing the
+ * unit maps, but the file is still read completely and its grammar nodes are created on the heap. HMM states and
+ * successors are not part of the file. the linguist therefore precomputes the successors of all search states
+ * after loading it, so the first utterances do not create them.
+ * <p/>
+ * the file records a hash of the sources of the grammar (see {@link #hashSources(ConfigurationManager, String)})
+ * and is rejected if the grammar or its dictionary has changed since it was written.
+ * <p/>
+ * File layout (big endian):
+ * <pre>
+ * int magic, int version, long sourceHash
+ * int numberOfUnits, numberOfUnits x (short length, UTF-8 name, boolean filler)
+ * int numberOfWords, numberOfWords x (short length, UTF-8 spelling, boolean filler, int numberOfPronunciations,
+ *     numberOfPronunciations x (int numberOfUnits, numberOfUnits x int unit))
+ * int numberOfNodes, int initialNode
+ * numberOfNodes x (int grammarId, boolean final, int numberOfAlternatives,
+ *     numberOfAlternatives x (int numberOfWords, numberOfWords x int word),
+ *     int numberOfArcs, numberOfArcs x (int target, float logProbability),
+ *     int numberOfNextUnits, numberOfNextUnits x int unit)
+ * </pre>
+ * units, words and nodes are referenced by their index in the file. the nodes are stored in the order
+ * the linguist numbers its search states.
+ */
+public class CompiledSearchGraph {
+
+    /**
+     * file extension used for compiled search graphs
+     */
+    public static final String EXTENSION = ".dfsg";
+
+    private static final int MAGIC = 0x44465347; // "DFSG"
+    private static final int VERSION = 2;
+    private static final String CHARSET = "UTF-8";
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final GrammarNode initialNode;
+    private final List<GrammarNode> nodes;
+    private final Map<GrammarNode, int[]> nextUnits;
+
+    private CompiledSearchGraph(GrammarNode initialNode, List<GrammarNode> nodes, Map<GrammarNode, int[]> nextUnits) {
+        this.initialNode = initialNode;
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.nextUnits = nextUnits;
+    }
+
+    /**
+     * @return the initial grammar node
+     */
+    public GrammarNode getInitialNode() {
+        return initialNode;
+    }
+
+    /**
+     * @return all grammar nodes in the order they were written
+     */
+    public List<GrammarNode> getGrammarNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the base IDs of the units which can follow a grammar node
+     */
+    public Map<GrammarNode, int[]> getNextUnits() {
+        return nextUnits;
+    }
+
+    /**
+     * writes a compiled grammar to a file readable by {@link #load(String, UnitManager, long)}
+     *
+     * @param file        path to the file
+     * @param sourceHash  hash of the sources of the grammar, see {@link #hashSources(ConfigurationManager, String)}
+     * @param initialNode the initial grammar node
+     * @param nodes       all grammar nodes
+     * @param nextUnits   the base IDs of the units which can follow every node, see
+     *                    {@link OurDynamicFlatLinguist#saveSearchGraph(String)}
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(String file, long sourceHash, GrammarNode initialNode, Collection<GrammarNode> nodes,
+                             Map<GrammarNode, int[]> nextUnits) throws IOException {
+        // next units are the first units of pronunciations or silence
+        List<Unit> units = new ArrayList<Unit>();
+        Map<Integer, Integer> unitByBaseId = new HashMap<Integer, Integer>();
+        Map<Unit, Integer> unitIds = new HashMap<Unit, Integer>();
+        List<Word> words = new ArrayList<Word>();
+        Map<Word, Integer> wordIds = new IdentityHashMap<Word, Integer>();
+        Map<GrammarNode, Integer> nodeIds = new IdentityHashMap<GrammarNode, Integer>();
+
+        addUnit(UnitManager.SILENCE, units, unitIds, unitByBaseId);
+        for (GrammarNode node : nodes) {
+            nodeIds.put(node, nodeIds.size());
+            for (Word[] alternative : node.getAlternatives()) {
+                for (Word word : alternative) {
+                    if (wordIds.containsKey(word)) {
+                        continue;
+                    }
+                    wordIds.put(word, words.size());
+                    words.add(word);
+                    for (Pronunciation pronunciation : word.getPronunciations()) {
+                        for (Unit unit : pronunciation.getUnits()) {
+                            addUnit(unit, units, unitIds, unitByBaseId);
+                        }
+                    }
+                }
+            }
+        }
+        if (!nodeIds.containsKey(initialNode)) {
+            throw new IOException("initial node " + initialNode + " is not part of the grammar");
+        }
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceHash);
+
+            out.writeInt(units.size());
+            for (Unit unit : units) {
+                writeString(out, unit.getName());
+                out.writeBoolean(unit.isFiller());
+            }
+
+            out.writeInt(words.size());
+            for (Word word : words) {
+                writeString(out, word.getSpelling());
+                out.writeBoolean(word.isFiller());
+                out.writeInt(word.getPronunciations().length);
+                for (Pronunciation pronunciation : word.getPronunciations()) {
+                    out.writeInt(pronunciation.getUnits().length);
+                    for (Unit unit : pronunciation.getUnits()) {
+                        out.writeInt(unitIds.get(unit));
+                    }
+                }
+            }
+
+            out.writeInt(nodes.size());
+            out.writeInt(nodeIds.get(initialNode));
+            for (GrammarNode node : nodes) {
+                out.writeInt(node.getID());
+                out.writeBoolean(node.isFinalNode());
+                Word[][] alternatives = node.getAlternatives();
+                out.writeInt(alternatives.length);
+                for (Word[] alternative : alternatives) {
+                    out.writeInt(alternative.length);
+                    for (Word word : alternative) {
+                        out.writeInt(wordIds.get(word));
+                    }
+                }
+                GrammarArc[] arcs = node.getSuccessors();
+                out.writeInt(arcs.length);
+                for (GrammarArc arc : arcs) {
+                    Integer target = nodeIds.get(arc.getGrammarNode());
+                    if (target == null) {
+                        throw new IOException("arc of " + node + " leads to " + arc.getGrammarNode()
+                                + " which is not part of the grammar");
+                    }
+                    out.writeInt(target);
+                    out.writeFloat(arc.getProbability());
+                }
+                int[] next = nextUnits.get(node);
+                if (next == null) {
+                    throw new IOException("next units of " + node + " are missing");
+                }
+                out.writeInt(next.length);
+                for (int baseId : next) {
+                    Integer unit = unitByBaseId.get(baseId);
+                    if (unit == null) {
+                        throw new IOException("unit " + baseId + " following " + node + " is not used by the grammar");
+                    }
+                    out.writeInt(unit);
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    private static void addUnit(Unit unit, List<Unit> units, Map<Unit, Integer> unitIds,
+                                Map<Integer, Integer> unitByBaseId) {
+        if (!unitIds.containsKey(unit)) {
+            unitIds.put(unit, units.size());
+            if (!unitByBaseId.containsKey(unit.getBaseID())) {
+                unitByBaseId.put(unit.getBaseID(), units.size());
+            }
+            units.add(unit);
+        }
+    }
+
+    /**
+     * reads a compiled search graph and creates its grammar nodes
+     *
+     * @param file        path to the file
+     * @param unitManager creates the units of the pronunciations
+     * @param sourceHash  hash of the sources of the grammar the graph has to be compiled from
+     * @return the search graph
+     * @throws IOException if the file cannot be read, has a wrong format or was compiled from other sources
+     */
+    public static CompiledSearchGraph load(String file, UnitManager unitManager, long sourceHash) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(FileUtils.readFileToByteArray(new File(file)));
+
+        if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException(file + " is not a compiled search graph of version " + VERSION);
+        }
+        if (buffer.getLong() != sourceHash) {
+            throw new IOException(file + " was compiled from another grammar or dictionary");
+        }
+        try {
+            return read(buffer, unitManager);
+        } catch (BufferUnderflowException e) {
+            throw new IOException(file + " is truncated");
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException(file + " is corrupt, error: " + e);
+        }
+    }
+
+    private static CompiledSearchGraph read(ByteBuffer buffer, UnitManager unitManager)
+            throws UnsupportedEncodingException {
+        Unit[] units = new Unit[buffer.getInt()];
+        for (int i = 0; i < units.length; i++) {
+            String name = readString(buffer);
+            units[i] = unitManager.getUnit(name, buffer.get() != 0);
+        }
+
+        Word[] words = new Word[buffer.getInt()];
+        for (int i = 0; i < words.length; i++) {
+            String spelling = readString(buffer);
+            boolean filler = buffer.get() != 0;
+            CompiledPronunciation[] pronunciations = new CompiledPronunciation[buffer.getInt()];
+            for (int p = 0; p < pronunciations.length; p++) {
+                pronunciations[p] = new CompiledPronunciation(readUnits(buffer, units));
+            }
+            words[i] = new Word(spelling, pronunciations, filler);
+            for (CompiledPronunciation pronunciation : pronunciations) {
+                pronunciation.setWord(words[i]);
+            }
+        }
+
+        GrammarNode[] nodes = new GrammarNode[buffer.getInt()];
+        int initialNode = buffer.getInt();
+        int[][] targets = new int[nodes.length][];
+        float[][] probabilities = new float[nodes.length][];
+        Map<GrammarNode, int[]> nextUnits = new HashMap<GrammarNode, int[]>(nodes.length * 2);
+        for (int n = 0; n < nodes.length; n++) {
+            int id = buffer.getInt();
+            boolean isFinal = buffer.get() != 0;
+            Word[][] alternatives = new Word[buffer.getInt()][];
+            for (int a = 0; a < alternatives.length; a++) {
+                alternatives[a] = new Word[buffer.getInt()];
+                for (int w = 0; w < alternatives[a].length; w++) {
+                    alternatives[a][w] = words[buffer.getInt()];
+                }
+            }
+            nodes[n] = new GrammarNode(id, alternatives);
+            nodes[n].setFinalNode(isFinal);
+
+            targets[n] = new int[buffer.getInt()];
+            probabilities[n] = new float[targets[n].length];
+            for (int a = 0; a < targets[n].length; a++) {
+                targets[n][a] = buffer.getInt();
+                probabilities[n][a] = buffer.getFloat();
+            }
+
+            int[] baseIds = new int[buffer.getInt()];
+            for (int u = 0; u < baseIds.length; u++) {
+                baseIds[u] = units[buffer.getInt()].getBaseID();
+            }
+            nextUnits.put(nodes[n], baseIds);
+        }
+
+        // arcs follow the nodes, now all nodes exist as targets
+        for (int n = 0; n < nodes.length; n++) {
+            for (int a = 0; a < targets[n].length; a++) {
+                nodes[n].add(nodes[targets[n][a]], probabilities[n][a]);
+            }
+        }
+        List<GrammarNode> nodeList = new ArrayList<GrammarNode>(nodes.length);
+        Collections.addAll(nodeList, nodes);
+        return new CompiledSearchGraph(nodes[initialNode], nodeList, nextUnits);
+    }
+
+    private static List<Unit> readUnits(ByteBuffer buffer, Unit[] units) {
+        int numberOfUnits = buffer.getInt();
+        List<Unit> result = new ArrayList<Unit>(numberOfUnits);
+        for (int i = 0; i < numberOfUnits; i++) {
+            result.add(units[buffer.getInt()]);
+        }
+        return result;
+    }
+
+    private static String readString(ByteBuffer buffer) throws UnsupportedEncodingException {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(CHARSET);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * calculates a hash of the sources of a grammar. these are the configuration of the grammar and of all
+     * components it uses, like its dictionary, and the content of the files and resources they are configured with.
+     * directories, like the location of JSGF grammars, are hashed by the content of the files directly in them.
+     * the grammar is neither created nor allocated for this.
+     *
+     * @param cm      the configuration
+     * @param grammar name of the grammar component
+     * @return the hash
+     * @throws IOException if a configured file cannot be read
+     */
+    public static long hashSources(ConfigurationManager cm, String grammar) throws IOException {
+        return hashComponent(FNV_OFFSET, cm, grammar, new HashSet<String>(), true);
+    }
+
+    /**
+     * calculates a hash of the configuration of a component and of all components it uses. unlike
+     * {@link #hashSources(ConfigurationManager, String)}, configured files are only hashed by their names.
+     *
+     * @param cm        the configuration
+     * @param component name of the component
+     * @return the hash
+     */
+    public static long hashConfiguration(ConfigurationManager cm, String component) {
+        try {
+            return hashComponent(FNV_OFFSET, cm, component, new HashSet<String>(), false);
+        } catch (IOException e) {
+            // no files are read
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long hashComponent(long h, ConfigurationManager cm, String component, Set<String> visited,
+                                      boolean contents) throws IOException {
+        PropertySheet ps = cm.getPropertySheet(component);
+        if (ps == null || !visited.add(component)) {
+            return hash(h, component);
+        }
+        h = hash(h, ps.getConfigurableClass().getName());
+        List<String> properties = new ArrayList<String>(ps.getRegisteredProperties());
+        Collections.sort(properties);
+        for (String property : properties) {
+            Object raw = ps.getRaw(property);
+            List<String> values = raw instanceof List ? ConfigurationManagerUtils.toStringList(raw)
+                    : raw != null ? Arrays.asList(raw.toString()) : Collections.<String>emptyList();
+            h = hash(h, property);
+            boolean components = ps.getType(property) == PropertyType.COMPONENT
+                    || ps.getType(property) == PropertyType.COMPONENT_LIST;
+            for (String value : values) {
+                value = SharedConfiguration.resolve(cm, value);
+                if (components) {
+                    h = hashComponent(h, cm, value, visited, contents);
+                } else {
+                    h = contents ? hashResource(hash(h, value), value) : hash(h, value);
+                }
+            }
+        }
+        return h;
+    }
+
+    // hashes the content of a value naming a file, directory or resource, other values are ignored
+    private static long hashResource(long h, String value) throws IOException {
+        URL url = null;
+        File file;
+        try {
+            url = ConfigurationManagerUtils.resourceToURL(value);
+            file = url != null && "file".equals(url.getProtocol()) ? FileUtils.toFile(url) : null;
+        } catch (MalformedURLException e) {
+            // may be a plain path
+            file = new File(value);
+        }
+        if (file != null) {
+            File[] files = file.isDirectory() ? file.listFiles() : new File[]{file};
+            if (files == null) {
+                return h;
+            }
+            Arrays.sort(files);
+            for (File f : files) {
+                if (f.isFile()) {
+                    h = hash(hash(h, f.getName()), FileUtils.readFileToByteArray(f));
+                }
+            }
+            return h;
+        }
+        if (url == null) {
+            return h;
+        }
+        InputStream in = null;
+        try {
+            in = url.openStream();
+            return hash(h, IOUtils.toByteArray(in));
+        } catch (IOException e) {
+            // e.g. a directory within a jar
+            return h;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    // 64 bit FNV-1a, like the hash of sentence lists in PhonemeDB
+    private static long hash(long h, String s) throws UnsupportedEncodingException {
+        return hash(h, s.getBytes(CHARSET));
+    }
+
+    private static long hash(long h, byte[] bytes) {
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        // separates consecutive values
+        h ^= bytes.length;
+        h *= FNV_PRIME;
+        return h;
+    }
+
+    /**
+     * pronunciation of a loaded word, Sphinx only creates them within its dictionaries
+     */
+    private static class CompiledPronunciation extends Pronunciation {
+
+        CompiledPronunciation(List<Unit> units) {
+            super(units);
+        }
+
+        @Override
+        protected void setWord(Word word) {
+            super.setWord(word);
+        }
+    }
+
+    /**
+     * compiles the grammar of a linguist and writes its search graph
+     *
+     * @param args Sphinx configuration, name of the linguist and the output file
+     * @throws IOException if the configuration or grammar cannot be loaded or the graph cannot be written
+     */
+    public static void main(String... args) throws IOException {
+        long start = System.currentTimeMillis();
+        ConfigurationManager cm = new ConfigurationManager(new File(args[0]).toURI().toURL());
+        OurDynamicFlatLinguist linguist = (OurDynamicFlatLinguist) cm.lookup(args[1]);
+        linguist.saveSearchGraph(args[2]);
+        System.out.println("The search graph of " + args[1] + " has been written to " + args[2]
+                + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -27,9 +27,11 @@ import edu.cmu.sphinx.util.props.*;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 import de.unihamburg.informatik.wtm.docks.data.PhoneData;
+import de.unihamburg.informatik.wtm.docks.phoneme.PhonemeSubstitution;
 
 /**
  * A simple form of the linguist. It makes the following simplifying assumptions: 1) Zero or one word per grammar node
@@ -87,12 +89,47 @@ public class OurDynamicFlatLinguist implements Linguist, Configurable {
     @S4Component(type = AcousticModel.class)
     public final static String PHONE_LOOP_ACOUSTIC_MODEL = "phoneLoopAcousticModel";
 
+    /**
+     * The property for the maximal number of search states whose successors are cached, 0 for no limit.
+     */
+    @S4Integer(defaultValue = 100000)
+    public final static String SUCCESSOR_CACHE_SIZE = "successorCacheSize";
+
+    /**
+     * The property for the order in which search states are evicted from the successor cache (FIFO or LRU).
+     */
+    @S4String(defaultValue = "FIFO", range = {"FIFO", "LRU"})
+    public final static String SUCCESSOR_CACHE_EVICTION = "successorCacheEviction";
+
+    /**
+     * The property that specifies whether the successors of all search states are cached when allocating. They are
+     * always cached if a search graph is loaded.
+     */
+    @S4Boolean(defaultValue = false)
+    public final static String PRECOMPUTE_SUCCESSORS = "precomputeSuccessors";
+
+    /**
+     * The property for a grammar serialized by {@link CompiledSearchGraph}, which is loaded instead of allocating the
+     * grammar and computing its unit maps. It is rejected if the configured grammar or its dictionary has changed.
+     * The file holds no search states, so the successors of all states are precomputed after loading it.
+     */
+    @S4String(mandatory = false)
+    public final static String SEARCH_GRAPH = "searchGraph";
+
+    /**
+     * The property for the probability multiplied to the score of a unit every time it is scored again within the
+     * same utterance, 1 for no penalty.
+     */
+    @S4Double(defaultValue = 1.0)
+    public final static String REPEATED_UNIT_PENALTY = "repeatedUnitPenalty";
+
 
     // ----------------------------------
     // Subcomponents that are configured
     // by the property sheet
     // -----------------------------------
     private Grammar grammar;
+    private UnitManager unitManager;
     private AcousticModel acousticModel;
     private AcousticModel phoneLoopAcousticModel;
     private LogMath logMath;
@@ -109,6 +146,15 @@ public class OurDynamicFlatLinguist implements Linguist, Configurable {
     private float logOutOfGrammarBranchProbability;
     private float logPhoneInsertionProbability;
     private boolean addOutOfGrammarBranch;
+    private float logRepeatedUnitPenalty = LogMath.LOG_ONE;
+    private boolean precomputeSuccessors;
+    private String searchGraphLocation;
+    // replaces the grammar if a compiled search graph is configured
+    private CompiledSearchGraph compiledSearchGraph;
+    // identify the sources of the configured grammar, null if the linguist was not configured
+    private ConfigurationManager configuration;
+    private String grammarName;
+    private Grammar configuredGrammar;
 
     // ------------------------------------
     // Data used for building and maintaining
@@ -131,6 +177,17 @@ public class OurDynamicFlatLinguist implements Linguist, Configurable {
 
     private Map<GrammarNode, Set<Unit>> nodeToUnitSetMap;
 
+    // compact IDs of the grammar nodes, pronunciations and units of the compiled grammar,
+    // used for hashing and comparing search states
+    private StateIds stateIds;
+
+    // how often every unit has been scored in the current utterance, indexed by unit ID.
+    // only used by the thread decoding with this linguist, search states are shared and immutable
+    private int[] timesUsed = new int[0];
+
+    // a grammar compiled by another thread, installed before the next recognition
+    private final AtomicReference<SwappedGrammar> swappedGrammar = new AtomicReference<SwappedGrammar>();
+
     // an empty arc (just waiting for Noah, I guess)
     private final SearchStateArc[] EMPTY_ARCS = new SearchStateArc[0];
 
@@ -175,6 +232,11 @@ public class DynamicFlatLinguist Javadoc)
 
         logMath = LogMath.getInstance();
         grammar = (Grammar) ps.getComponent(GRAMMAR);
+        unitManager = (UnitManager) ps.getComponent(UNIT_MANAGER);
+        configuration = ConfigurationManagerUtils.getPropertyManager(ps);
+        Object rawGrammar = ps.getRaw(GRAMMAR);
+        grammarName = rawGrammar instanceof String ? SharedConfiguration.resolve(configuration, (String) rawGrammar) : null;
+        configuredGrammar = grammar;
 
         // get the rest of the configuration data
         logWordInsertionProbability = logMath.linearToLog(ps.getDouble(PROP_WORD_INSERTION_PROBABILITY));
@@ -184,6 +246,11 @@ public class DynamicFlatLinguist Javadoc)
         languageWeight = ps.getFloat(Linguist.PROP_LANGUAGE_WEIGHT);
         addOutOfGrammarBranch = ps.getBoolean(ADD_OUT_OF_GRAMMAR_BRANCH);
         logOutOfGrammarBranchProbability = logMath.linearToLog(ps.getDouble(OUT_OF_GRAMMAR_PROBABILITY));
+        successorCache = new SuccessorCache(ps.getInt(SUCCESSOR_CACHE_SIZE),
+                SuccessorCache.Eviction.valueOf(ps.getString(SUCCESSOR_CACHE_EVICTION)));
+        precomputeSuccessors = ps.getBoolean(PRECOMPUTE_SUCCESSORS);
+        logRepeatedUnitPenalty = logMath.linearToLog(ps.getDouble(REPEATED_UNIT_PENALTY));
+        searchGraphLocation = ps.getString(SEARCH_GRAPH);
 
         logPhoneInsertionProbability = logMath.linearToLog(ps.getDouble(PHONE_INSERTION_PROBABILITY));
         if (addOutOfGrammarBranch) {
@@ -219,17 +286,109 @@ public class DynamicFlatLinguist Javadoc)
     public void allocate() throws IOException {
         logger.info("Allocating DFLAT");
         allocateAcousticModel();
-        grammar.allocate();
-        nodeToNextUnitArrayMap = new HashMap<GrammarNode, int[]>();
-        nodeToUnitSetMap = new HashMap<GrammarNode, Set<Unit>>();
+        if (searchGraphLocation != null) {
+            Timer timer = TimerPool.getTimer(this, "loadSearchGraph");
+            timer.start();
+            compiledSearchGraph = CompiledSearchGraph.load(searchGraphLocation,
+                    unitManager != null ? unitManager : new UnitManager(), getSourceHash());
+            timer.stop();
+            logger.info("loaded search graph " + searchGraphLocation);
+        } else {
+            allocateGrammar();
+        }
         Timer timer = TimerPool.getTimer(this, "compileGrammar");
         timer.start();
         compileGrammar();
         timer.stop();
+        if (precomputeSuccessors || compiledSearchGraph != null) {
+            precomputeSuccessors();
+        }
         logger.info("Done allocating  DFLAT");
     }
 
 
+    private void allocateGrammar() throws IOException {
+        // the grammar may be shared with the linguists of other decoders, build it only once
+        if (grammar.getInitialNode() == null) {
+            grammar.allocate();
+        }
+        nodeToNextUnitArrayMap = new HashMap<GrammarNode, int[]>();
+        nodeToUnitSetMap = new HashMap<GrammarNode, Set<Unit>>();
+    }
+
+
+    /**
+     * Compiles the grammar and writes the resulting search graph to a file, which can be configured as the search
+     * graph of linguists instead of the grammar. The acoustic model is not needed for this.
+     *
+     * @param file path to the file
+     * @throws IOException if the grammar cannot be allocated or the file cannot be written
+     */
+    public void saveSearchGraph(String file) throws IOException {
+        if (compiledSearchGraph != null) {
+            throw new IllegalStateException("search graph was loaded from " + searchGraphLocation);
+        }
+        if (nodeToNextUnitArrayMap == null) {
+            allocateGrammar();
+        }
+        if (grammarHasChanged()) {
+            compileGrammar();
+        }
+        CompiledSearchGraph.write(file, getSourceHash(), initialGrammarState, grammar.getGrammarNodes(),
+                nodeToNextUnitArrayMap);
+    }
+
+
+    /**
+     * Returns the hash of the sources of the configured grammar, 0 if they are unknown because the linguist was not
+     * configured or another grammar has been swapped in.
+     *
+     * @return the hash
+     * @throws IOException if a source of the grammar cannot be read
+     */
+    private long getSourceHash() throws IOException {
+        if (configuration == null || grammarName == null || grammar != configuredGrammar) {
+            return 0;
+        }
+        return CompiledSearchGraph.hashSources(configuration, grammarName);
+    }
+
+
+    /**
+     * Caches the successors of all search states reachable from the initial state, so searches do not need to
+     * create them. Stops if the successor cache is full.
+     */
+    private void precomputeSuccessors() {
+        Set<SearchState> visited = new HashSet<SearchState>();
+        LinkedList<SearchState> pending = new LinkedList<SearchState>();
+        pending.add(searchGraph.getInitialState());
+        while (!pending.isEmpty()) {
+            SearchState state = pending.removeFirst();
+            if (!visited.add(state)) {
+                continue;
+            }
+            if (successorCache.isFull()) {
+                logger.warning("successor cache is too small to hold the whole grammar, " + successorCache);
+                break;
+            }
+            for (SearchStateArc arc : state.getSuccessors()) {
+                pending.add(arc.getState());
+            }
+        }
+        logger.info("precomputed successors of " + visited.size() + " states, " + successorCache);
+    }
+
+
+    /**
+     * Returns the cache of the successors of search states, e.g. to monitor its size
+     *
+     * @return the successor cache
+     */
+    public SuccessorCache getSuccessorCache() {
+        return successorCache;
+    }
+
+
     /**
      * Allocates the acoustic model.
      *
@@ -250,10 +409,14 @@ public class DynamicFlatLinguist Javadoc)
     */
     @Override
     public void deallocate() {
+        logger.info(successorCache.toString());
         if (acousticModel != null) {
             acousticModel.deallocate();
         }
-        grammar.deallocate();
+        if (compiledSearchGraph == null) {
+            grammar.deallocate();
+        }
+        compiledSearchGraph = null;
     }
 
 
@@ -262,9 +425,66 @@ public class DynamicFlatLinguist Javadoc)
      */
     @Override
     public void startRecognition() {
-        if (grammarHasChanged()) {
+        SwappedGrammar swapped = swappedGrammar.getAndSet(null);
+        if (swapped != null) {
+            installGrammar(swapped);
+        } else if (grammarHasChanged()) {
             compileGrammar();
         }
+        Arrays.fill(timesUsed, 0);
+    }
+
+
+    /**
+     * Compiles another grammar and installs it before the next recognition, so the grammar can be changed between
+     * utterances without allocating the acoustic model again. May be called by any thread, also while decoding. If
+     * called several times before the next recognition, the last grammar is installed.
+     *
+     * @param newGrammar allocated grammar using the units of the acoustic model of this linguist
+     */
+    public void swapGrammar(Grammar newGrammar) {
+        swapGrammar(compileSwappedGrammar(newGrammar));
+    }
+
+
+    /**
+     * Installs a grammar compiled by {@link #compileSwappedGrammar(Grammar)} before the next recognition, like
+     * {@link #swapGrammar(Grammar)}. The same compiled grammar can be installed in several linguists.
+     *
+     * @param swapped the compiled grammar
+     */
+    public void swapGrammar(SwappedGrammar swapped) {
+        swappedGrammar.set(swapped);
+    }
+
+
+    /**
+     * Compiles the unit maps and state IDs of a grammar once, so it can be installed in the linguists of all decoders
+     * using the same acoustic model. The result is not changed by the linguists.
+     *
+     * @param newGrammar allocated grammar using the units of the acoustic model of the linguists
+     * @return the compiled grammar
+     */
+    public static SwappedGrammar compileSwappedGrammar(Grammar newGrammar) {
+        if (newGrammar.getInitialNode() == null) {
+            throw new IllegalArgumentException("grammar " + newGrammar + " is not allocated");
+        }
+        Map<GrammarNode, int[]> nextUnits = new HashMap<GrammarNode, int[]>();
+        Map<GrammarNode, Set<Unit>> unitSets = new HashMap<GrammarNode, Set<Unit>>();
+        for (GrammarNode node : newGrammar.getGrammarNodes()) {
+            initUnitMaps(node, nextUnits, unitSets);
+        }
+        return new SwappedGrammar(newGrammar, nextUnits, unitSets, new StateIds(newGrammar.getGrammarNodes()));
+    }
+
+
+    /**
+     * Returns the grammar the search graph is built from, null if a compiled search graph is used
+     *
+     * @return the current grammar
+     */
+    public Grammar getGrammar() {
+        return compiledSearchGraph == null ? grammar : null;
     }
 
 
@@ -291,18 +511,83 @@ public class DynamicFlatLinguist Javadoc)
      * @return true if the grammar has changed
      */
     private boolean grammarHasChanged() {
+        if (compiledSearchGraph != null) {
+            return false;
+        }
         return initialGrammarState == null ||
                 initialGrammarState != grammar.getInitialNode();
     }
 
     private void compileGrammar() {
+        // states of the previous grammar are never reached again
+        successorCache.clear();
+
+        if (compiledSearchGraph != null) {
+            // the unit maps have been compiled offline
+            initialGrammarState = compiledSearchGraph.getInitialNode();
+            nodeToNextUnitArrayMap = compiledSearchGraph.getNextUnits();
+            stateIds = new StateIds(compiledSearchGraph.getGrammarNodes());
+        } else {
+            initialGrammarState = grammar.getInitialNode();
+            for (GrammarNode node : grammar.getGrammarNodes()) {
+                initUnitMaps(node, nodeToNextUnitArrayMap, nodeToUnitSetMap);
+            }
+            stateIds = new StateIds(grammar.getGrammarNodes());
+        }
+        logger.info("assigned state IDs: " + stateIds);
+
+        timesUsed = new int[stateIds.getNumberOfUnits()];
+        searchGraph = new DynamicFlatSearchGraph();
+    }
+
+
+    /**
+     * Replaces the compiled grammar by a grammar compiled by {@link #swapGrammar(Grammar)}. Search states of the
+     * previous grammar must not be used afterwards.
+     *
+     * @param swapped the compiled grammar
+     */
+    private void installGrammar(SwappedGrammar swapped) {
+        successorCache.clear();
+        grammar = swapped.grammar;
+        compiledSearchGraph = null;
         initialGrammarState = grammar.getInitialNode();
+        nodeToNextUnitArrayMap = swapped.nextUnits;
+        nodeToUnitSetMap = swapped.unitSets;
+        stateIds = swapped.stateIds;
+        logger.info("swapped grammar, assigned state IDs: " + stateIds);
 
-        for (GrammarNode node : grammar.getGrammarNodes()) {
-            initUnitMaps(node);
+        timesUsed = new int[stateIds.getNumberOfUnits()];
+        searchGraph = new DynamicFlatSearchGraph();
+    }
+
+
+    /**
+     * A grammar with its unit maps and state IDs, compiled while another grammar is used for decoding.
+     */
+    public static final class SwappedGrammar {
+
+        final Grammar grammar;
+        final Map<GrammarNode, int[]> nextUnits;
+        final Map<GrammarNode, Set<Unit>> unitSets;
+        final StateIds stateIds;
+
+        private SwappedGrammar(Grammar grammar, Map<GrammarNode, int[]> nextUnits,
+                               Map<GrammarNode, Set<Unit>> unitSets, StateIds stateIds) {
+            this.grammar = grammar;
+            this.nextUnits = nextUnits;
+            this.unitSets = unitSets;
+            this.stateIds = stateIds;
         }
 
-        searchGraph = new DynamicFlatSearchGraph();
+        /**
+         * Returns the compiled grammar
+         *
+         * @return the grammar
+         */
+        public Grammar getGrammar() {
+            return grammar;
+        }
     }
 
 
@@ -313,13 +598,16 @@ public class DynamicFlatLinguist Javadoc)
      * possible entry units for a given grammar node. This is typically used to determine if a path with a given right
      * context should branch into a particular grammar node
      *
-     * @param node the units maps will be created for this node.
+     * @param node              the units maps will be created for this node.
+     * @param nextUnitArrayMap  the map of next units to fill
+     * @param unitSetMap        the map of entry units to fill
      */
-    private void initUnitMaps(GrammarNode node) {
+    private static void initUnitMaps(GrammarNode node, Map<GrammarNode, int[]> nextUnitArrayMap,
+                              Map<GrammarNode, Set<Unit>> unitSetMap) {
 
         // collect the set of next units for this node
 
-        if (nodeToNextUnitArrayMap.get(node) == null) {
+        if (nextUnitArrayMap.get(node) == null) {
             Set<GrammarNode> vistedNodes = new HashSet<GrammarNode>();
             Set<Unit> unitSet = new HashSet<Unit>();
 
@@ -333,16 +621,16 @@ public class DynamicFlatLinguist Javadoc)
             for (Unit unit : unitSet) {
                 nextUnits[index++] = unit.getBaseID();
             }
-            nodeToNextUnitArrayMap.put(node, nextUnits);
+            nextUnitArrayMap.put(node, nextUnits);
         }
 
         // collect the set of entry units for this node
 
-        if (nodeToUnitSetMap.get(node) == null) {
+        if (unitSetMap.get(node) == null) {
             Set<GrammarNode> vistedNodes = new HashSet<GrammarNode>();
             Set<Unit> unitSet = new HashSet<Unit>();
             collectNextUnits(node, vistedNodes, unitSet);
-            nodeToUnitSetMap.put(node, unitSet);
+            unitSetMap.put(node, unitSet);
         }
     }
 
@@ -355,7 +643,7 @@ public class DynamicFlatLinguist Javadoc)
      *                    grammar node more than once (which could lead to a death spiral)
      * @param unitSet     the entry units are collected here.
      */
-    private void collectNextUnits(GrammarNode thisNode,
+    private static void collectNextUnits(GrammarNode thisNode,
                                   Set<GrammarNode> vistedNodes, Set<Unit> unitSet) {
         if (vistedNodes.contains(thisNode)) {
             return;
@@ -380,7 +668,106 @@ public class DynamicFlatLinguist Javadoc)
     }
 
 
-    final Map<SearchState, SearchStateArc[]> successorCache = new HashMap<SearchState, SearchStateArc[]>();
+    /**
+     * Assigns consecutive IDs to the grammar nodes of a grammar, to the pronunciations of their words and to the
+     * units of these pronunciations. The ID of a pronunciation is unique among all pronunciations of the grammar and
+     * the ID of a unit among all units, so a search state is identified by a single int instead of the objects along
+     * its path.
+     */
+    static class StateIds {
+
+        private final Map<GrammarNode, Integer> nodeIds;
+        // first pronunciation ID of every node, the last entry is the number of pronunciations
+        private final int[] firstPronunciation;
+        // first unit ID of every pronunciation, the last entry is the number of units
+        private final int[] firstUnit;
+
+        StateIds(Collection<GrammarNode> nodes) {
+            nodeIds = new HashMap<GrammarNode, Integer>(nodes.size() * 2);
+            firstPronunciation = new int[nodes.size() + 1];
+            int numberOfPronunciations = 0;
+            for (GrammarNode node : nodes) {
+                int id = nodeIds.size();
+                nodeIds.put(node, id);
+                firstPronunciation[id] = numberOfPronunciations;
+                if (!node.isEmpty()) {
+                    numberOfPronunciations += node.getWord().getPronunciations().length;
+                }
+            }
+            firstPronunciation[nodes.size()] = numberOfPronunciations;
+
+            firstUnit = new int[numberOfPronunciations + 1];
+            int numberOfUnits = 0;
+            for (GrammarNode node : nodes) {
+                if (node.isEmpty()) {
+                    continue;
+                }
+                int pronunciationId = firstPronunciation[nodeIds.get(node)];
+                for (Pronunciation pronunciation : node.getWord().getPronunciations()) {
+                    firstUnit[pronunciationId++] = numberOfUnits;
+                    numberOfUnits += pronunciation.getUnits().length;
+                }
+            }
+            firstUnit[numberOfPronunciations] = numberOfUnits;
+        }
+
+        /**
+         * @param node grammar node of the compiled grammar
+         * @return the ID of the node
+         */
+        int getNodeId(GrammarNode node) {
+            Integer id = nodeIds.get(node);
+            if (id == null) {
+                throw new IllegalStateException("grammar node " + node + " is not part of the compiled grammar");
+            }
+            return id;
+        }
+
+        /**
+         * @param nodeId ID of the node of the word
+         * @param which  index of the pronunciation within the word
+         * @return the ID of the pronunciation
+         */
+        int getPronunciationId(int nodeId, int which) {
+            return firstPronunciation[nodeId] + which;
+        }
+
+        /**
+         * @param pronunciationId ID of the pronunciation
+         * @param which           index of the unit within the pronunciation
+         * @return the ID of the unit
+         */
+        int getUnitId(int pronunciationId, int which) {
+            return firstUnit[pronunciationId] + which;
+        }
+
+        int getNumberOfNodes() {
+            return nodeIds.size();
+        }
+
+        int getNumberOfPronunciations() {
+            return firstUnit.length - 1;
+        }
+
+        int getNumberOfUnits() {
+            return firstUnit[firstUnit.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            return getNumberOfNodes() + " nodes, " + getNumberOfPronunciations() + " pronunciations, "
+                    + getNumberOfUnits() + " units";
+        }
+    }
+
+    // spreads the bits of consecutive IDs over the hash code
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // used by the one search of this linguist, decoders of a pool have their own linguists
+    private SuccessorCache successorCache = new SuccessorCache(100000, SuccessorCache.Eviction.FIFO);
 
     /**
      * The base search state for this dynamic flat linguist.
@@ -555,6 +942,7 @@ public class DynamicFlatLinguist Javadoc)
     class GrammarState extends FlatSearchState {
 
         private final GrammarNode node;
+        private final int id;
         private final int lc;
         private final int nextBaseID;
         private final float languageProbability;
@@ -595,6 +983,7 @@ public class DynamicFlatLinguist Javadoc)
             this.lc = lc;
             this.nextBaseID = nextBaseID;
             this.node = node;
+            this.id = stateIds.getNodeId(node);
             this.languageProbability = languageProbability;
         }
 
@@ -618,7 +1007,7 @@ public class DynamicFlatLinguist Javadoc)
          */
         @Override
         public int hashCode() {
-            return node.hashCode() * 17 + lc * 7 + nextBaseID;
+            return mix((id * 31 + lc) * 31 + nextBaseID);
         }
 
 
@@ -634,7 +1023,7 @@ public class DynamicFlatLinguist Javadoc)
                 return true;
             } else if (o instanceof GrammarState) {
                 GrammarState other = (GrammarState) o;
-                return other.node == node && lc == other.lc
+                return id == other.id && lc == other.lc
                         && nextBaseID == other.nextBaseID;
             } else {
                 return false;
@@ -682,7 +1071,7 @@ public class DynamicFlatLinguist Javadoc)
 
                 for (int i = 0; i < pronunciations.length; i++) {
                     nextArcs[i] = new PronunciationState(this,
-                            pronunciations[i]);
+                            pronunciations[i], i);
                 }
                 arcs = nextArcs;
             }
@@ -720,7 +1109,7 @@ public class DynamicFlatLinguist Javadoc)
          */
         @Override
         public String getSignature() {
-            return "GS " + node + "-lc-";
+            return "GS " + id + "-lc-" + lc + '-' + nextBaseID;
         }
 
 
@@ -824,6 +1213,16 @@ public class DynamicFlatLinguist Javadoc)
             return node;
         }
 
+
+        /**
+         * Returns the ID of the grammar node within the compiled grammar
+         *
+         * @return the node ID
+         */
+        int getId() {
+            return id;
+        }
+
     }
 
     class InitialState extends FlatSearchState {
@@ -890,17 +1289,20 @@ public class DynamicFlatLinguist Javadoc)
 
         private final GrammarState gs;
         private final Pronunciation pronunciation;
+        private final int id;
 
 
         /**
          * Creates a PronunciationState
          *
-         * @param gs the associated grammar state
-         * @param p  the pronunciation
+         * @param gs    the associated grammar state
+         * @param p     the pronunciation
+         * @param which the index of the pronunciation within the word
          */
-        PronunciationState(GrammarState gs, Pronunciation p) {
+        PronunciationState(GrammarState gs, Pronunciation p, int which) {
             this.gs = gs;
             this.pronunciation = p;
+            this.id = stateIds.getPronunciationId(gs.getId(), which);
         }
 
 
@@ -926,7 +1328,7 @@ public class DynamicFlatLinguist Javadoc)
          */
         @Override
         public int hashCode() {
-            return 13 * gs.hashCode() + pronunciation.hashCode();
+            return mix(id) * 13 + gs.hashCode();
         }
 
 
@@ -942,8 +1344,7 @@ public class DynamicFlatLinguist Javadoc)
                 return true;
             } else if (o instanceof PronunciationState) {
                 PronunciationState other = (PronunciationState) o;
-                return other.gs.equals(gs) &&
-                        other.pronunciation.equals(pronunciation);
+                return id == other.id && other.gs.equals(gs);
             } else {
                 return false;
             }
@@ -1026,7 +1427,7 @@ public class DynamicFlatLinguist Javadoc)
          */
         @Override
         public String getSignature() {
-            return "PS " + gs.getSignature() + '-' + pronunciation;
+            return "PS " + gs.getSignature() + '-' + id;
         }
 
 
@@ -1062,6 +1463,16 @@ public class DynamicFlatLinguist Javadoc)
         }
 
 
+        /**
+         * Returns the ID of the pronunciation within the compiled grammar
+         *
+         * @return the pronunciation ID
+         */
+        int getId() {
+            return id;
+        }
+
+
         /**
          * Returns true if this WordSearchState indicates the start of a word. Returns false if this WordSearchState
          * indicates the end of a word.
@@ -1084,9 +1495,11 @@ public class DynamicFlatLinguist Javadoc)
 
         private final PronunciationState pState;
         private final int index;
+        // unique among all units of the compiled grammar, identifies node, pronunciation and index
+        private final int id;
         private final boolean isLastUnitOfWord;
-
-        private int numberOfTimesUsed = 0;
+        // ID of the unit in the phoneme substitution tables
+        private final int phonemeId;
 
         /**
          * Creates a FullHMMSearchState
@@ -1112,8 +1525,14 @@ public class DynamicFlatLinguist Javadoc)
         OurFullHMMSearchState(PronunciationState p, int which, int lc, int rc) {
             this.pState = p;
             this.index = which;
+            this.id = stateIds.getUnitId(p.getId(), which);
             isLastUnitOfWord =
                     which == p.getPronunciation().getUnits().length - 1;
+            String name = p.getPronunciation().getUnits()[which].getName();
+            phonemeId = PhonemeSubstitution.getPhonemeId(name);
+            if (phonemeId < 0) {
+                throw new IllegalArgumentException("unit " + name + " has no substitution score");
+            }
         }
 
 
@@ -1154,10 +1573,7 @@ public class DynamicFlatLinguist Javadoc)
          */
         @Override
         public int hashCode() {
-            // TODO: maybe improve hash by using AtomicInteger.getNext() from a class variable
-            return pState.getGrammarState().getGrammarNode().hashCode() * 29 +
-                    pState.getPronunciation().hashCode() * 19 +
-                    index * 7; //+ 43 * lc + rc;
+            return mix(id);
         }
 
 
@@ -1177,13 +1593,8 @@ public class DynamicFlatLinguist Javadoc)
                 // Grammar Node equal
                 // Pronunciation equal
                 // index equal
-                // rc equal
-
-                return index == other.index &&
-                        pState.getGrammarState().getGrammarNode() ==
-                                other.pState.getGrammarState().getGrammarNode() &&
-                        pState.getPronunciation() == other.pState.getPronunciation()
-                        ;
+                // all of them are encoded in the ID
+                return id == other.id;
             } else {
                 return false;
             }
@@ -1267,8 +1678,7 @@ public class DynamicFlatLinguist Javadoc)
          */
         @Override
         public String getSignature() {
-            return "HSS " + pState.getGrammarState().getGrammarNode() +
-                    pState.getPronunciation() + index + '-';
+            return "HSS " + id + '-';
         }
 
         /**
@@ -1311,12 +1721,13 @@ public class DynamicFlatLinguist Javadoc)
 
         @Override
         public float getScore(Data data) {
-            //System.out.println("getting score");
-            String name = pState.getPronunciation().getUnits()[index].getName();
-            // TODO: if numberOfTimesUsed != 0 then add a penalty to the score
-            numberOfTimesUsed++;
-
-            return ((PhoneData) data).getConfusionScore(name, numberOfTimesUsed);
+            float score = ((PhoneData) data).getConfusionScore(phonemeId);
+            // penalize units matching several frames
+            int numberOfTimesUsed = timesUsed[id]++;
+            if (numberOfTimesUsed > 0 && logRepeatedUnitPenalty != LogMath.LOG_ONE) {
+                score += numberOfTimesUsed * logRepeatedUnitPenalty;
+            }
+            return score;
         }
     }
 
@@ -1334,7 +1745,7 @@ public class DynamicFlatLinguist Javadoc)
         @Override
         public SearchState getInitialState() {
             InitialState initialState = new InitialState();
-            initialState.addArc(new GrammarState(grammar.getInitialNode()));
+            initialState.addArc(new GrammarState(initialGrammarState));
             // add an out-of-grammar branch if configured to do so
             return initialState;
         }
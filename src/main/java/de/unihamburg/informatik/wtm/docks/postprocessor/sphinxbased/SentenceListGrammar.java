@@ -0,0 +1,162 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.unihamburg.informatik.wtm.docks.utils.TextNormalizer;
+import edu.cmu.sphinx.linguist.dictionary.Dictionary;
+import edu.cmu.sphinx.linguist.language.grammar.Grammar;
+import edu.cmu.sphinx.linguist.language.grammar.GrammarNode;
+import edu.cmu.sphinx.util.LogMath;
+import edu.cmu.sphinx.util.props.PropertyException;
+import edu.cmu.sphinx.util.props.PropertySheet;
+import edu.cmu.sphinx.util.props.S4String;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * a grammar accepting the sentences of a list, built without writing and parsing a JSGF grammar.
+ * sentences starting with the same words share the nodes of these words, so the grammar is a prefix tree
+ * of words ending in a single final node. every sentence has the same probability.
+ */
+public class SentenceListGrammar extends Grammar {
+
+    /**
+     * The property for the file with one sentence per line, used if no sentences are given to the constructor.
+     */
+    @S4String(mandatory = false)
+    public final static String SENTENCE_FILE = "sentenceFile";
+
+    private static final Logger LOG = LoggerFactory.getLogger(SentenceListGrammar.class);
+
+    private List<String> sentences;
+    private String sentenceFile;
+
+    /**
+     * a word of the prefix tree
+     */
+    private static final class Prefix {
+
+        final String word;
+        final Map<String, Prefix> next = new LinkedHashMap<String, Prefix>();
+        // sentences containing this prefix and ending with it
+        int sentences;
+        int endingSentences;
+
+        Prefix(String word) {
+            this.word = word;
+        }
+    }
+
+    /**
+     * creates a grammar of a list of sentences
+     *
+     * @param sentences  sentences of words separated by spaces, case and special characters are ignored
+     * @param dictionary dictionary containing all words of the sentences, e.g. of the current grammar of a postprocessor
+     */
+    public SentenceListGrammar(List<String> sentences, Dictionary dictionary) {
+        super(false, true, false, false, dictionary);
+        this.sentences = new ArrayList<String>(sentences);
+    }
+
+    public SentenceListGrammar() {
+    }
+
+    @Override
+    public void newProperties(PropertySheet ps) throws PropertyException {
+        super.newProperties(ps);
+        sentenceFile = ps.getString(SENTENCE_FILE);
+    }
+
+    @Override
+    protected GrammarNode createGrammar() throws IOException {
+        if (sentences == null) {
+            if (sentenceFile == null) {
+                throw new IOException("grammar has neither sentences nor a sentence file");
+            }
+            sentences = FileUtils.readLines(new File(sentenceFile), "UTF-8");
+        }
+        Prefix root = createPrefixTree();
+        if (root.sentences == 0) {
+            throw new IOException("grammar has no sentence of known words");
+        }
+
+        GrammarNode initial = createGrammarNode(false);
+        GrammarNode end = createGrammarNode(true);
+        addSuccessors(initial, root, end, LogMath.getInstance());
+        LOG.info("{} sentences, {} grammar nodes", root.sentences, getGrammarNodes().size());
+        return initial;
+    }
+
+    // the words are normalized like the sentences converted to phonemes, so "Go" and "go" share a node
+    private Prefix createPrefixTree() {
+        Prefix root = new Prefix(null);
+        for (String sentence : sentences) {
+            String[] words = TextNormalizer.toWords(sentence);
+            if (words == null || words[0].isEmpty() || !isKnown(words, sentence)) {
+                continue;
+            }
+            Prefix prefix = root;
+            prefix.sentences++;
+            for (String word : words) {
+                Prefix next = prefix.next.get(word);
+                if (next == null) {
+                    next = new Prefix(word);
+                    prefix.next.put(word, next);
+                }
+                prefix = next;
+                prefix.sentences++;
+            }
+            prefix.endingSentences++;
+        }
+        return root;
+    }
+
+    private boolean isKnown(String[] words, String sentence) {
+        for (String word : words) {
+            if (dictionary.getWord(word) == null) {
+                LOG.warn("skipping sentence \"{}\", \"{}\" is not in the dictionary", sentence, word);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the probability of an arc is the share of the sentences of a prefix continuing with the next word
+    private void addSuccessors(GrammarNode node, Prefix prefix, GrammarNode end, LogMath logMath) {
+        if (prefix.endingSentences > 0) {
+            node.add(end, logMath.linearToLog((double) prefix.endingSentences / prefix.sentences));
+        }
+        for (Prefix next : prefix.next.values()) {
+            GrammarNode nextNode = createGrammarNode(next.word);
+            node.add(nextNode, logMath.linearToLog((double) next.sentences / prefix.sentences));
+            addSuccessors(nextNode, next, end, logMath);
+        }
+    }
+}
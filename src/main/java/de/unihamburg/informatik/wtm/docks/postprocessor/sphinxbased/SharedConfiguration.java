@@ -0,0 +1,111 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import edu.cmu.sphinx.linguist.acoustic.AcousticModel;
+import edu.cmu.sphinx.linguist.acoustic.UnitManager;
+import edu.cmu.sphinx.linguist.acoustic.tiedstate.Loader;
+import edu.cmu.sphinx.linguist.dictionary.Dictionary;
+import edu.cmu.sphinx.linguist.language.grammar.Grammar;
+import edu.cmu.sphinx.linguist.language.ngram.LanguageModel;
+import edu.cmu.sphinx.util.props.ConfigurationManager;
+import edu.cmu.sphinx.util.props.PropertySheet;
+import edu.cmu.sphinx.util.props.PropertyType;
+
+/**
+ * creates copies of a Sphinx configuration sharing the read-only components of the original,
+ * e.g. acoustic model, dictionary and grammar. all other components like recognizer, search manager,
+ * scorer and front end are created once per copy, so every copy can decode on its own.
+ */
+public final class SharedConfiguration {
+
+    /**
+     * types of components not changed while decoding
+     */
+    public static final List<Class<?>> READ_ONLY_TYPES = Collections.unmodifiableList(Arrays.<Class<?>>asList(
+            AcousticModel.class, Loader.class, UnitManager.class, Dictionary.class, Grammar.class,
+            LanguageModel.class));
+
+    private SharedConfiguration() {
+        // prevent instantiation
+    }
+
+    /**
+     * loads the configuration of the original again and lets it use the shared components of the original
+     *
+     * @param original    configuration loaded from a URL
+     * @param sharedTypes types of the components to share
+     * @return the copy
+     */
+    public static ConfigurationManager copy(ConfigurationManager original, List<Class<?>> sharedTypes) {
+        ConfigurationManager copy = new ConfigurationManager(original.getConfigURL());
+        for (Map.Entry<String, String> property : original.getGlobalProperties().entrySet()) {
+            copy.setGlobalProperty(property.getKey(), property.getValue());
+        }
+
+        // components referencing a shared one get the instance of the original before they are created
+        for (String name : copy.getComponentNames()) {
+            PropertySheet ps = copy.getPropertySheet(name);
+            for (String property : ps.getRegisteredProperties()) {
+                if (ps.getType(property) != PropertyType.COMPONENT) {
+                    continue;
+                }
+                Object raw = ps.getRaw(property);
+                if (!(raw instanceof String)) {
+                    continue;
+                }
+                String component = resolve(copy, (String) raw);
+                if (isShared(original, component, sharedTypes)) {
+                    ps.setComponent(property, component, original.lookup(component));
+                }
+            }
+        }
+        return copy;
+    }
+
+    // resolves references to global properties like ${grammar}
+    static String resolve(ConfigurationManager cm, String value) {
+        if (value.startsWith("${") && value.endsWith("}")) {
+            String global = cm.getGlobalProperty(value.substring(2, value.length() - 1));
+            return global != null ? global : value;
+        }
+        return value;
+    }
+
+    private static boolean isShared(ConfigurationManager cm, String name, List<Class<?>> sharedTypes) {
+        PropertySheet ps = cm.getPropertySheet(name);
+        if (ps == null) {
+            return false;
+        }
+        for (Class<?> type : sharedTypes) {
+            if (type.isAssignableFrom(ps.getConfigurableClass())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
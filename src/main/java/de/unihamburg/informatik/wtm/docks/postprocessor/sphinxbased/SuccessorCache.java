@@ -0,0 +1,149 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.cmu.sphinx.linguist.SearchState;
+import edu.cmu.sphinx.linguist.SearchStateArc;
+
+/**
+ * bounded cache of the successors of search states.
+ * if the cache is full, the states added first (FIFO) or used least recently (LRU) are evicted.
+ * the cache is not thread-safe, every linguist has its own and is used by one search at a time.
+ */
+public class SuccessorCache {
+
+    /**
+     * order in which states are evicted
+     */
+    public enum Eviction {
+        FIFO, LRU
+    }
+
+    private final int maximumSize;
+    private final Eviction eviction;
+    private final Map<SearchState, SearchStateArc[]> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maximumSize maximal number of states, 0 or less for no limit
+     * @param eviction    order in which states are evicted
+     */
+    public SuccessorCache(final int maximumSize, Eviction eviction) {
+        this.maximumSize = maximumSize;
+        this.eviction = eviction;
+        entries = new LinkedHashMap<SearchState, SearchStateArc[]>(16, 0.75f, eviction == Eviction.LRU) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SearchState, SearchStateArc[]> eldest) {
+                if (maximumSize > 0 && size() > maximumSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param state a search state
+     * @return the cached successors or null
+     */
+    public SearchStateArc[] get(SearchState state) {
+        SearchStateArc[] successors = entries.get(state);
+        if (successors != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return successors;
+    }
+
+    /**
+     * caches the successors of a state, evicting another state if the cache is full
+     *
+     * @param state      a search state
+     * @param successors the successors of the state
+     */
+    public void put(SearchState state, SearchStateArc[] successors) {
+        entries.put(state, successors);
+    }
+
+    /**
+     * removes all states, e.g. if the grammar has changed
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return number of cached states
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return maximal number of states, 0 or less for no limit
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return true if adding a state evicts another one
+     */
+    public boolean isFull() {
+        return maximumSize > 0 && entries.size() >= maximumSize;
+    }
+
+    /**
+     * @return number of lookups finding the successors
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups not finding the successors
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of states evicted
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "successor cache (" + eviction + "): " + size() + "/" + (maximumSize > 0 ? maximumSize : "unbounded")
+                + " states, " + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+}
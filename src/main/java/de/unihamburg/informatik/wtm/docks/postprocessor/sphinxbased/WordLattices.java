@@ -0,0 +1,76 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.unihamburg.informatik.wtm.docks.data.WordLattice;
+import edu.cmu.sphinx.linguist.dictionary.Word;
+import edu.cmu.sphinx.result.Edge;
+import edu.cmu.sphinx.result.Lattice;
+import edu.cmu.sphinx.result.Node;
+import edu.cmu.sphinx.result.Result;
+import edu.cmu.sphinx.util.LogMath;
+
+/**
+ * converts Sphinx lattices to compact word lattices, which keep no references to Sphinx objects
+ * and can be stored with the results
+ */
+public class WordLattices {
+
+    private WordLattices() {
+        // prevent instantiation
+    }
+
+    /**
+     * builds the word lattice of a result. the search needs to keep all tokens.
+     *
+     * @param result result of a recognizer
+     * @return the lattice with posteriors computed
+     */
+    public static WordLattice fromResult(Result result) {
+        return fromLattice(new Lattice(result));
+    }
+
+    /**
+     * @param lattice Sphinx lattice
+     * @return the lattice with posteriors computed
+     */
+    public static WordLattice fromLattice(Lattice lattice) {
+        LogMath logMath = LogMath.getInstance();
+        WordLattice wordLattice = new WordLattice();
+        Map<Node, Integer> nodes = new HashMap<Node, Integer>();
+        for (Node node : lattice.sortNodes()) {
+            Word word = node.getWord();
+            boolean filler = word.isFiller() || word.isSentenceStartWord() || word.isSentenceEndWord();
+            nodes.put(node, wordLattice.addNode(word.getSpelling(), filler, node.getBeginTime(), node.getEndTime()));
+        }
+        for (Edge edge : lattice.getEdges()) {
+            wordLattice.addEdge(nodes.get(edge.getFromNode()), nodes.get(edge.getToNode()),
+                    logMath.logToLn((float) edge.getAcousticScore()), logMath.logToLn((float) edge.getLMScore()));
+        }
+        wordLattice.setBoundaries(nodes.get(lattice.getInitialNode()), nodes.get(lattice.getTerminalNode()));
+        wordLattice.computePosteriors(1);
+        return wordLattice;
+    }
+}
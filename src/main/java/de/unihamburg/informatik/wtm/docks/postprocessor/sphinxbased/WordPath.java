@@ -0,0 +1,139 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import java.util.List;
+
+import edu.cmu.sphinx.decoder.search.Token;
+import edu.cmu.sphinx.linguist.WordSearchState;
+import edu.cmu.sphinx.linguist.acoustic.Unit;
+import edu.cmu.sphinx.linguist.dictionary.Pronunciation;
+
+/**
+ * reads the words and pronunciations of a path of tokens, like Token.getWordPath,
+ * without building the path string of Sphinx and parsing it again.
+ * fillers are skipped. the buffers are reused, so an instance must only be used by one thread at a time.
+ */
+public class WordPath {
+
+    // pronunciations of the words from the last to the first word
+    private Pronunciation[] pronunciations = new Pronunciation[16];
+    private int size;
+    private final StringBuilder sb = new StringBuilder(256);
+
+    /**
+     * reads the words of the path ending at a token
+     *
+     * @param token last token of the path, may be null for an empty path
+     * @return this path
+     */
+    public WordPath read(Token token) {
+        size = 0;
+        for (Token t = token; t != null; t = t.getPredecessor()) {
+            if (!t.isWord()) {
+                continue;
+            }
+            Pronunciation pronunciation = ((WordSearchState) t.getSearchState()).getPronunciation();
+            if (pronunciation.getWord().isFiller()) {
+                continue;
+            }
+            if (size == pronunciations.length) {
+                Pronunciation[] grown = new Pronunciation[size * 2];
+                System.arraycopy(pronunciations, 0, grown, 0, size);
+                pronunciations = grown;
+            }
+            pronunciations[size++] = pronunciation;
+        }
+        return this;
+    }
+
+    /**
+     * @return number of words in the path
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i index of the word, starting with the first word
+     * @return the pronunciation of the word
+     */
+    public Pronunciation get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("word " + i + " of " + size);
+        }
+        return pronunciations[size - 1 - i];
+    }
+
+    /**
+     * @return the words separated by spaces, like Token.getWordPathNoFiller
+     */
+    public String getWords() {
+        sb.setLength(0);
+        for (int i = size - 1; i >= 0; i--) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(pronunciations[i].getWord().getSpelling());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the units of all words, each followed by a space
+     */
+    public String getUnits() {
+        sb.setLength(0);
+        for (int i = size - 1; i >= 0; i--) {
+            for (Unit unit : pronunciations[i].getUnits()) {
+                sb.append(unit.getName()).append(' ');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param phonemes phonemes
+     * @return the phonemes, each followed by a space
+     */
+    public String join(String[] phonemes) {
+        sb.setLength(0);
+        for (String phoneme : phonemes) {
+            sb.append(phoneme).append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param tokens final tokens of a result
+     * @return the token with the highest score, like Result.getBestFinalToken, or null if there is none
+     */
+    public static Token getBest(List<Token> tokens) {
+        Token best = null;
+        for (Token t : tokens) {
+            if (best == null || t.getScore() > best.getScore()) {
+                best = t;
+            }
+        }
+        return best;
+    }
+}
@@ -43,6 +43,7 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 
 import de.unihamburg.informatik.wtm.docks.data.Result;
 import de.unihamburg.informatik.wtm.docks.utils.Printer;
+import de.unihamburg.informatik.wtm.docks.utils.TextNormalizer;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -115,15 +116,7 @@ public class RawGoogleRecognizer implements StandardRecognizer {
             resultJSON = resultJSON.substring(resultJSON.indexOf("transcript") + 13);
 
             // clean from special chars
-            utterance = resultJSON.substring(0, resultJSON.indexOf("\""));
-            utterance = utterance.replace("@", "");
-
-            utterance = utterance.replaceAll("[^a-zA-Z 0-9]", "");
-            utterance = utterance.replaceAll(" +", " ");
-
-            if (!utterance.equals("") && utterance.charAt(0) == ' ') {
-                utterance = utterance.substring(1);
-            }
+            utterance = TextNormalizer.clean(resultJSON.substring(0, resultJSON.indexOf("\"")));
 
             // add to result
             if (!utterance.equals("")) {
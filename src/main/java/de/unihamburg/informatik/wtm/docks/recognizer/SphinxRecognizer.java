@@ -17,6 +17,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 
 import de.unihamburg.informatik.wtm.docks.data.Result;
+import de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased.AcousticModelRegistry;
 
 import edu.cmu.sphinx.decoder.search.Token;
 import edu.cmu.sphinx.frontend.util.AudioFileDataSource;
@@ -56,6 +57,8 @@ public class SphinxRecognizer implements StandardRecognizer {
             // TODO Auto-generated catch block
             e.printStackTrace();
         }
+        // load acoustic models only once per process
+        AcousticModelRegistry.getInstance().share(cm);
         recognizer = (Recognizer) cm.lookup("recognizer");
         recognizer.allocate();
         microphone = (Microphone) cm.lookup("microphone");
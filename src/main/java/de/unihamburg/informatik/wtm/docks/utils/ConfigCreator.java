@@ -32,9 +32,11 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
-import de.unihamburg.informatik.wtm.docks.data.Result;
+import de.unihamburg.informatik.wtm.docks.phoneme.BulkPhonemeCreator;
 import de.unihamburg.informatik.wtm.docks.phoneme.PhonemeCreator;
 
 /**
@@ -74,6 +76,8 @@ public class ConfigCreator {
                     out.write("<property name=\"grammarpath\" value=\"file:" + basepath + "/model/\"/>\n");
                 } else if (strLine.contains("<property name=\"dictionaryfile\"")) {
                     out.write("<property name=\"dictionaryfile\" value=\"file:" + basepath + "model/" + configname + ".dic\"/>\n");
+                } else if (strLine.contains("<property name=\"sentencefile\"")) {
+                    out.write("<property name=\"sentencefile\" value=\"" + basepath + configname + ".sentences.txt\"/>\n");
                 } else if (strLine.contains("<property name=\"languagemodelfile\"")) {
                     out.write("<property name=\"languagemodelfile\" value=\"file:" + basepath + "model/" + configname + ".lm\"/>\n");
                 } else
@@ -125,7 +129,7 @@ public class ConfigCreator {
         //create dictionary
         wordListToDictionary(basepath, basepath + configname + ".words", basepath + "model/" + configname
                 + ".dic");
-        //create a sentencelist grammar
+        //create a sentencelist grammar, only used by the sphinx config, the postprocessors read the sentence list
         sentenceListToGrammar(basepath + configname + ".sentences.txt", basepath + "model/" + configname + ".gram");
         //create a grammar of sentences config for sphinx
         createXML(basepath, configname, ".fsgsentences.xml");
@@ -449,11 +453,7 @@ public class ConfigCreator {
             while ((strLine = br.readLine()) != null) {
                 int endName = strLine.indexOf(" ");
                 String sentence = strLine.substring(endName + 1);
-                sentence = sentence.replaceAll("[^a-zA-Z 0-9;]", "");
-                sentence = sentence.replaceAll(" +", " ");
-                if (!sentence.equals(""))
-                    if (sentence.charAt(0) == ' ')
-                        sentence = sentence.substring(1);
+                sentence = TextNormalizer.clean(sentence, true);
                 String[] sentenceWords = sentence.split(" ");
                 for (String s : sentenceWords)
                     words.add(s);
@@ -481,7 +481,7 @@ public class ConfigCreator {
 
     //create a dictionary from a list of words
     private static void wordListToDictionary(String basepath, String wordList, String dicfile) {
-        PhonemeCreator pc = new PhonemeCreator(wordList);
+        BulkPhonemeCreator bpc = new BulkPhonemeCreator(PhonemeCreator.getInstance());
 
         HashSet<String> words = new HashSet<String>();
         FileInputStream fstream = null;
@@ -512,34 +512,34 @@ public class ConfigCreator {
             e.printStackTrace();
         }
 
-        BufferedWriter out = getWriter(dicfile);
-        Result r;
+        //convert all words in parallel
+        HashMap<String, String> normalizedWords = new HashMap<String, String>();
         for (String s : words) {
-            try {
-                out.write(s + "\t");
-            } catch (IOException e1) {
-                // TODO Auto-generated catch block
-                e1.printStackTrace();
+            String[] normalized = TextNormalizer.toWords(s);
+            if (normalized != null && normalized.length == 1) {
+                normalizedWords.put(s, normalized[0]);
             }
+        }
+        Map<String, String[]> wordPhonemes = bpc.getWordPhonemes(normalizedWords.values());
 
-            r = new Result();
-            r.addResult(s);
-            String[] pho = pc.getPhonemes(r).get(0).getPhonemes();
+        BufferedWriter out = getWriter(dicfile);
+        for (String s : words) {
+            if (!normalizedWords.containsKey(s)) {
+                continue;
+            }
+            String[] pho = wordPhonemes.get(normalizedWords.get(s));
+            StringBuilder line = new StringBuilder(s).append('\t');
             for (int i = 0; i < pho.length; i++) {
-                if (i == pho.length - 1)
-                    try {
-                        out.write(pho[i] + "\n");
-                    } catch (IOException e) {
-                        // TODO Auto-generated catch block
-                        e.printStackTrace();
-                    }
-                else
-                    try {
-                        out.write(pho[i] + " ");
-                    } catch (IOException e) {
-                        // TODO Auto-generated catch block
-                        e.printStackTrace();
-                    }
+                if (i > 0) {
+                    line.append(' ');
+                }
+                line.append(pho[i]);
+            }
+            try {
+                out.write(line.append('\n').toString());
+            } catch (IOException e) {
+                // TODO Auto-generated catch block
+                e.printStackTrace();
             }
         }
         try {
@@ -57,10 +57,7 @@ public class ExampleChooser {
                     temp = temp.substring(0, temp.length() - 1);
                 } else temp = temp.substring(0, temp.length());
 
-                temp = temp.replaceAll("[^a-zA-Z 0-9]", "");
-                temp = temp.replaceAll(" +", " ");
-                if (temp.charAt(0) == ' ')
-                    temp = temp.substring(1);
+                temp = TextNormalizer.clean(temp);
 
                 sentences.add(temp.toLowerCase());
             }
@@ -0,0 +1,294 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import de.unihamburg.informatik.wtm.docks.data.Result;
+import de.unihamburg.informatik.wtm.docks.postprocessor.PostProcessor;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * loads recognizers, post processors and other resources in parallel at startup.
+ * every component is created in the background and can be fetched with {@link #get(Future)}
+ * when it is needed, which only blocks if it is not ready yet. post processors are warmed up
+ * with a corpus of results afterwards, so the hot paths are compiled before the first request.
+ */
+public class Startup {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Startup.class);
+
+    /**
+     * state of a component
+     */
+    public enum Status {
+        LOADING, WARMING_UP, READY, FAILED
+    }
+
+    private final ExecutorService pool;
+    private final Map<String, Status> status = new LinkedHashMap<String, Status>();
+    private final Map<String, Future<?>> components = new LinkedHashMap<String, Future<?>>();
+
+    private List<Result> warmUpCorpus = Collections.emptyList();
+    private int warmUpIterations = 1;
+
+    /**
+     * creates a startup using one thread per available processor
+     */
+    public Startup() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param numberOfThreads number of components loaded at the same time
+     */
+    public Startup(int numberOfThreads) {
+        pool = Executors.newFixedThreadPool(Math.max(1, numberOfThreads), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "startup");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * sets the results used to warm up post processors added afterwards
+     *
+     * @param corpus     results to run through every post processor
+     * @param iterations number of times the corpus is run
+     */
+    public synchronized void setWarmUpCorpus(List<Result> corpus, int iterations) {
+        warmUpCorpus = new ArrayList<Result>(corpus);
+        warmUpIterations = iterations;
+    }
+
+    /**
+     * reads the results used to warm up post processors added afterwards from a file.
+     * every line is one result, alternatives are separated by '|'. post processors are not
+     * warmed up if the file does not exist
+     *
+     * @param file       path to the corpus
+     * @param iterations number of times the corpus is run
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized void setWarmUpCorpus(String file, int iterations) throws IOException {
+        if (!new File(file).exists()) {
+            LOG.info("no warm-up corpus {}", file);
+            setWarmUpCorpus(Collections.<Result>emptyList(), iterations);
+            return;
+        }
+        setWarmUpCorpus(readWarmUpCorpus(file), iterations);
+    }
+
+    private static List<Result> readWarmUpCorpus(String file) throws IOException {
+        List<Result> corpus = new ArrayList<Result>();
+        BufferedReader in = null;
+        try {
+            in = new BufferedReader(new FileReader(file));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                Result r = new Result();
+                for (String hypothesis : line.split("\\|")) {
+                    r.addResult(hypothesis);
+                }
+                corpus.add(r);
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return corpus;
+    }
+
+    /**
+     * starts loading a component in the background
+     *
+     * @param name    name used for reporting
+     * @param factory creates the component
+     * @return the component once it is ready
+     */
+    public <T> Future<T> load(String name, Callable<T> factory) {
+        return submit(name, factory, false);
+    }
+
+    /**
+     * starts loading a post processor in the background and warms it up with the warm-up corpus
+     *
+     * @param name    name used for reporting
+     * @param factory creates the post processor
+     * @return the post processor once it is warmed up
+     */
+    public <T extends PostProcessor> Future<T> loadPostProcessor(String name, Callable<T> factory) {
+        return submit(name, factory, true);
+    }
+
+    private synchronized <T> Future<T> submit(final String name, final Callable<T> factory, final boolean warmUp) {
+        if (components.containsKey(name)) {
+            throw new IllegalArgumentException("component " + name + " is already loading");
+        }
+        final List<Result> corpus = warmUp ? warmUpCorpus : Collections.<Result>emptyList();
+        final int iterations = warmUpIterations;
+
+        status.put(name, Status.LOADING);
+        Future<T> future = pool.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                long start = System.currentTimeMillis();
+                try {
+                    T component = factory.call();
+                    long loaded = System.currentTimeMillis();
+
+                    if (!corpus.isEmpty()) {
+                        setStatus(name, Status.WARMING_UP);
+                        warmUp((PostProcessor) component, corpus, iterations);
+                    }
+                    setStatus(name, Status.READY);
+                    LOG.info("{} ready (loading: {} ms, warm-up: {} ms)", name, loaded - start,
+                            System.currentTimeMillis() - loaded);
+                    return component;
+                } catch (Exception e) {
+                    setStatus(name, Status.FAILED);
+                    LOG.error("failed to load {}, error: {}", name, e.getMessage());
+                    throw e;
+                }
+            }
+        });
+        components.put(name, future);
+        return future;
+    }
+
+    private static void warmUp(PostProcessor postProcessor, List<Result> corpus, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            for (Result r : corpus) {
+                // post processors may change the result
+                Result copy = new Result();
+                for (String hypothesis : r.getResultList()) {
+                    copy.addResult(hypothesis);
+                }
+                postProcessor.recognizeFromResult(copy);
+            }
+        }
+    }
+
+    private synchronized void setStatus(String name, Status s) {
+        status.put(name, s);
+    }
+
+    /**
+     * @param name name of a component
+     * @return the state of the component or null if it is unknown
+     */
+    public synchronized Status getStatus(String name) {
+        return status.get(name);
+    }
+
+    /**
+     * @return the state of every component in the order they were added
+     */
+    public synchronized Map<String, Status> getStatus() {
+        return new LinkedHashMap<String, Status>(status);
+    }
+
+    /**
+     * @return true if all components are ready
+     */
+    public synchronized boolean isReady() {
+        for (Status s : status.values()) {
+            if (s != Status.READY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * waits until all components are ready or failed
+     *
+     * @param timeout maximal time to wait
+     * @param unit    unit of the timeout
+     * @return true if all components are ready
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        List<Future<?>> futures;
+        synchronized (this) {
+            futures = new ArrayList<Future<?>>(components.values());
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Future<?> future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                // reported as failed
+            } catch (TimeoutException e) {
+                return false;
+            }
+        }
+        return isReady();
+    }
+
+    /**
+     * stops loading, components already loading are finished
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * waits for a component
+     *
+     * @param component the component returned by load or loadPostProcessor
+     * @return the component
+     */
+    public static <T> T get(Future<T> component) {
+        try {
+            return component.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for component");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("failed to load component, error: " + e.getCause().getMessage());
+        }
+    }
+}
@@ -286,13 +286,7 @@ public class TestSupervisor {
                     String fileEntry = strLine.split(";")[0];
 
                     strLine = strLine.substring(strLine.indexOf(";"));
-                    strLine = strLine.replaceAll("[^a-zA-Z 0-9;]", "");
-                    strLine = strLine.replaceAll(" +", " ");
-
-
-                    if (!strLine.equals(""))
-                        if (strLine.charAt(0) == ' ')
-                            strLine = strLine.substring(1);
+                    strLine = TextNormalizer.clean(strLine, true);
 
                     strLine = strLine.substring(strLine.indexOf(";",
                             strLine.indexOf(";")));
@@ -1156,11 +1150,7 @@ public class TestSupervisor {
                 file = filename.substring(filename.lastIndexOf("/") + 1,
                         filename.length());
 
-                sentence = sentence.replaceAll("[^a-zA-Z 0-9;]", "");
-                sentence = sentence.replaceAll(" +", " ");
-                if (!sentence.equals(""))
-                    if (sentence.charAt(0) == ' ')
-                        sentence = sentence.substring(1);
+                sentence = TextNormalizer.clean(sentence, true);
 
                 Printer.printColor(Printer.ANSI_CYAN, count + "/"
                         + numberExamples + " " + file + " : " + sentence);
@@ -1281,11 +1271,7 @@ public class TestSupervisor {
                 file = filename.substring(filename.lastIndexOf("/") + 1,
                         filename.length());
 
-                sentence = sentence.replaceAll("[^a-zA-Z 0-9;]", "");
-                sentence = sentence.replaceAll(" +", " ");
-                if (!sentence.equals(""))
-                    if (sentence.charAt(0) == ' ')
-                        sentence = sentence.substring(1);
+                sentence = TextNormalizer.clean(sentence, true);
 
                 Printer.printColor(Printer.ANSI_CYAN, count + "/"
                         + numberExamples + " " + file + " : " + sentence);
@@ -1663,11 +1649,7 @@ public class TestSupervisor {
                 file = filename.substring(filename.lastIndexOf("/") + 1,
                         filename.length());
 
-                sentence = sentence.replaceAll("[^a-zA-Z 0-9;]", "");
-                sentence = sentence.replaceAll(" +", " ");
-                if (!sentence.equals(""))
-                    if (sentence.charAt(0) == ' ')
-                        sentence = sentence.substring(1);
+                sentence = TextNormalizer.clean(sentence, true);
 
                 Printer.printColor(Printer.ANSI_CYAN, count + "/"
                         + numberExamples + " " + file + " : " + sentence);
@@ -2226,11 +2208,7 @@ public class TestSupervisor {
                 file = filename.substring(filename.lastIndexOf("/") + 1,
                         filename.length());
 
-                sentence = sentence.replaceAll("[^a-zA-Z 0-9;]", "");
-                sentence = sentence.replaceAll(" +", " ");
-                if (!sentence.equals(""))
-                    if (sentence.charAt(0) == ' ')
-                        sentence = sentence.substring(1);
+                sentence = TextNormalizer.clean(sentence, true);
 
                 Printer.printColor(Printer.ANSI_CYAN, count + "/"
                         + numberExamples + " " + file + " : " + sentence);
@@ -2451,11 +2429,7 @@ public class TestSupervisor {
                 file = filename.substring(filename.lastIndexOf("/") + 1,
                         filename.length());
 
-                sentence = sentence.replaceAll("[^a-zA-Z 0-9;]", "");
-                sentence = sentence.replaceAll(" +", " ");
-                if (!sentence.equals(""))
-                    if (sentence.charAt(0) == ' ')
-                        sentence = sentence.substring(1);
+                sentence = TextNormalizer.clean(sentence, true);
 
                 Printer.printColor(Printer.ANSI_CYAN, count + "/"
                         + numberExamples + " " + file + " : " + sentence);
@@ -2632,11 +2606,7 @@ public class TestSupervisor {
                 file = filename.substring(filename.lastIndexOf("/") + 1,
                         filename.length());
 
-                sentence = sentence.replaceAll("[^a-zA-Z 0-9;]", "");
-                sentence = sentence.replaceAll(" +", " ");
-                if (!sentence.equals(""))
-                    if (sentence.charAt(0) == ' ')
-                        sentence = sentence.substring(1);
+                sentence = TextNormalizer.clean(sentence, true);
 
                 Printer.printColor(Printer.ANSI_CYAN, count + "/"
                         + numberExamples + " " + file + " : " + sentence);
@@ -3049,11 +3019,7 @@ public class TestSupervisor {
                 file = filename.substring(filename.lastIndexOf("/") + 1,
                         filename.length());
 
-                sentence = sentence.replaceAll("[^a-zA-Z 0-9;]", "");
-                sentence = sentence.replaceAll(" +", " ");
-                if (!sentence.equals(""))
-                    if (sentence.charAt(0) == ' ')
-                        sentence = sentence.substring(1);
+                sentence = TextNormalizer.clean(sentence, true);
 
                 Printer.printColor(Printer.ANSI_CYAN, count + "/"
                         + numberExamples + " " + file + " : " + sentence);
@@ -3882,11 +3848,7 @@ public class TestSupervisor {
                 file = filename.substring(filename.lastIndexOf("/") + 1,
                         filename.length());
 
-                sentence = sentence.replaceAll("[^a-zA-Z 0-9;]", "");
-                sentence = sentence.replaceAll(" +", " ");
-                if (!sentence.equals(""))
-                    if (sentence.charAt(0) == ' ')
-                        sentence = sentence.substring(1);
+                sentence = TextNormalizer.clean(sentence, true);
 
                 Printer.printColor(Printer.ANSI_CYAN, count + "/"
                         + numberExamples + " " + file + " : " + sentence);
@@ -4551,11 +4513,7 @@ public class TestSupervisor {
             , SphinxBasedPostProcessor pnr, SphinxBasedPostProcessor pur, SphinxBasedPostProcessor pgr_sentences, WordlistPostProcessor llr) {
 
 
-        sentence = sentence.replaceAll("[^a-zA-Z 0-9;]", "");
-        sentence = sentence.replaceAll(" +", " ");
-        if (!sentence.equals(""))
-            if (sentence.charAt(0) == ' ')
-                sentence = sentence.substring(1);
+        sentence = TextNormalizer.clean(sentence, true);
 
         Printer.printColor(Printer.ANSI_CYAN, sentence);
 
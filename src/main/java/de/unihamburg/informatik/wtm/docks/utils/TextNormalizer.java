@@ -0,0 +1,134 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package de.unihamburg.informatik.wtm.docks.utils;
+
+/**
+ * removes special characters from recognition results and sentence lists.
+ * does the same as
+ * <pre>
+ * s = s.replaceAll("[^a-zA-Z 0-9]", "");
+ * s = s.replaceAll(" +", " ");
+ * if (!s.equals("") &amp;&amp; s.charAt(0) == ' ')
+ *     s = s.substring(1);
+ * </pre>
+ * in a single pass without regular expressions and intermediate strings.
+ */
+public final class TextNormalizer {
+
+    // returned by normalize if no allowed character was found at all
+    private static final int EMPTY = -1;
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * removes all characters except letters, digits and spaces, collapses multiple spaces
+     * and removes a leading space
+     *
+     * @param raw raw sentence
+     * @return the cleaned sentence, case is preserved
+     */
+    public static String clean(String raw) {
+        return clean(raw, false);
+    }
+
+    /**
+     * @param raw            raw sentence
+     * @param keepSemicolons keep ';' which is used as separator in test files
+     * @return the cleaned sentence, case is preserved
+     * @see #clean(String)
+     */
+    public static String clean(String raw, boolean keepSemicolons) {
+        char[] buffer = new char[raw.length()];
+        int length = normalize(raw, keepSemicolons, false, buffer);
+        if (length <= 0) {
+            return "";
+        }
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * cleans a raw sentence and splits it to lower case words
+     *
+     * @param raw raw sentence
+     * @return the words or null if no letter, digit or space is left of the raw sentence
+     */
+    public static String[] toWords(String raw) {
+        char[] buffer = new char[raw.length()];
+        int length = normalize(raw, false, true, buffer);
+        if (length == EMPTY) {
+            return null;
+        }
+        if (length == 0) {
+            // same as "".split(" ")
+            return new String[]{""};
+        }
+
+        // a trailing space does not start a new word
+        int end = buffer[length - 1] == ' ' ? length - 1 : length;
+        int numberOfWords = 1;
+        for (int i = 0; i < end; i++) {
+            if (buffer[i] == ' ') {
+                numberOfWords++;
+            }
+        }
+
+        String[] words = new String[numberOfWords];
+        int word = 0;
+        int start = 0;
+        for (int i = 0; i < end; i++) {
+            if (buffer[i] == ' ') {
+                words[word++] = new String(buffer, start, i - start);
+                start = i + 1;
+            }
+        }
+        words[word] = new String(buffer, start, end - start);
+        return words;
+    }
+
+    // writes the cleaned characters to buffer and returns their number or EMPTY
+    private static int normalize(String raw, boolean keepSemicolons, boolean lowerCase, char[] buffer) {
+        int length = 0;
+        boolean found = false;
+        boolean lastWasSpace = false;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == ' ') {
+                found = true;
+                // collapse spaces and drop the leading one
+                if (!lastWasSpace && length > 0) {
+                    buffer[length++] = ' ';
+                }
+                lastWasSpace = true;
+            } else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || (keepSemicolons && c == ';')) {
+                found = true;
+                buffer[length++] = c;
+                lastWasSpace = false;
+            } else if (c >= 'A' && c <= 'Z') {
+                found = true;
+                buffer[length++] = lowerCase ? (char) (c + ('a' - 'A')) : c;
+                lastWasSpace = false;
+            }
+        }
+        return found ? length : EMPTY;
+    }
+}
@@ -0,0 +1,159 @@
+package de.unihamburg.informatik.wtm.docks.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+public class WordLatticeTest {
+
+    private int go;
+    private int no;
+    private int left;
+    private int right;
+
+    // paths: "go left" -20, "go right" -21 + 5 * language weight, "no left" -22
+    private WordLattice createLattice() {
+        WordLattice lattice = new WordLattice();
+        int start = lattice.addNode("<s>", true, 0, 0);
+        go = lattice.addNode("go", false, 1, 10);
+        no = lattice.addNode("no", false, 1, 10);
+        left = lattice.addNode("left", false, 11, 20);
+        right = lattice.addNode("right", false, 11, 20);
+        int end = lattice.addNode("</s>", true, 21, 21);
+        lattice.addEdge(start, go, -10, 0);
+        lattice.addEdge(start, no, -12, 0);
+        lattice.addEdge(go, left, -10, 0);
+        lattice.addEdge(go, right, -11, 5);
+        lattice.addEdge(no, left, -10, 0);
+        lattice.addEdge(left, end, 0, 0);
+        lattice.addEdge(right, end, 0, 0);
+        lattice.setBoundaries(start, end);
+        return lattice;
+    }
+
+    @Test
+    public void testNbest() {
+        WordLattice lattice = createLattice();
+        Assert.assertEquals("Paths should be ordered by score.",
+                Arrays.asList("go left", "go right", "no left"), lattice.getNbest(10, 0));
+        Assert.assertEquals("Other language weights should reorder the paths.",
+                Arrays.asList("go right", "go left"), lattice.getNbest(2, 1));
+
+        List<int[]> paths = lattice.getBestPaths(1, 0);
+        Assert.assertEquals("Only the best path should be returned.", 1, paths.size());
+        Assert.assertEquals("Paths should start at the initial node.", 0, paths.get(0)[0]);
+    }
+
+    @Test
+    public void testPosteriors() {
+        WordLattice lattice = createLattice();
+        lattice.computePosteriors(0);
+        double z = Math.exp(-20) + Math.exp(-21) + Math.exp(-22);
+        Assert.assertEquals("Posterior should sum the paths through the node.",
+                (Math.exp(-20) + Math.exp(-21)) / z, lattice.getPosterior(go), 1E-9);
+        Assert.assertEquals("Posteriors of competing nodes should sum to 1.", 1,
+                lattice.getPosterior(go) + lattice.getPosterior(no), 1E-9);
+        Assert.assertEquals("Posterior should sum the paths through the node.",
+                (Math.exp(-20) + Math.exp(-22)) / z, lattice.getPosterior(left), 1E-9);
+        Assert.assertEquals("All paths should pass the initial node.", 1, lattice.getPosterior(0), 1E-9);
+    }
+
+    @Test
+    public void testConfusionNetwork() {
+        WordLattice lattice = createLattice();
+        lattice.computePosteriors(0);
+        ConfusionNetwork network = lattice.toConfusionNetwork(0);
+        Assert.assertEquals("Every word of the best path should get a slot.", 2, network.size());
+        Assert.assertArrayEquals("Competing words should share a slot.", new String[]{"go", "no"}, network.getWords(0));
+        Assert.assertEquals("Slot posteriors should be the node posteriors.", lattice.getPosterior(go),
+                network.getPosteriors(0)[0], 1E-9);
+        Assert.assertArrayEquals("Competing words should share a slot.",
+                new String[]{"left", "right"}, network.getWords(1));
+        Assert.assertEquals("The best words should form the best hypothesis.", "go left", network.getBestHypothesis());
+    }
+
+    @Test
+    public void testEpsilon() {
+        WordLattice lattice = new WordLattice();
+        int start = lattice.addNode("<s>", true, 0, 0);
+        int go = lattice.addNode("go", false, 1, 10);
+        int end = lattice.addNode("</s>", true, 11, 11);
+        lattice.addEdge(start, go, -1, 0);
+        lattice.addEdge(go, end, 0, 0);
+        lattice.addEdge(start, end, -3, 0);
+        lattice.setBoundaries(start, end);
+        lattice.computePosteriors(1);
+
+        ConfusionNetwork network = lattice.toConfusionNetwork(1);
+        Assert.assertEquals("The skipping path should be no word.", ConfusionNetwork.EPSILON, network.getWords(0)[1]);
+        Assert.assertEquals("No word should get the remaining probability.", 1 - lattice.getPosterior(go),
+                network.getPosteriors(0)[1], 1E-9);
+    }
+
+    @Test
+    public void testWordsOfOnePathInOneSlot() {
+        // paths: "go left" -1, "go to left" -2, where "go" and "to" overlap the same word of the best path
+        WordLattice lattice = new WordLattice();
+        int start = lattice.addNode("<s>", true, 0, 0);
+        int go = lattice.addNode("go", false, 1, 10);
+        int shortGo = lattice.addNode("go", false, 1, 5);
+        int to = lattice.addNode("to", false, 6, 10);
+        int left = lattice.addNode("left", false, 11, 20);
+        int end = lattice.addNode("</s>", true, 21, 21);
+        lattice.addEdge(start, go, -1, 0);
+        lattice.addEdge(start, shortGo, -2, 0);
+        lattice.addEdge(go, left, 0, 0);
+        lattice.addEdge(shortGo, to, 0, 0);
+        lattice.addEdge(to, left, 0, 0);
+        lattice.addEdge(left, end, 0, 0);
+        lattice.setBoundaries(start, end);
+        lattice.computePosteriors(0);
+
+        ConfusionNetwork network = lattice.toConfusionNetwork(0);
+        Assert.assertArrayEquals("Both words of the other path should share the slot.",
+                new String[]{"go", "to"}, network.getWords(0));
+        double sum = 0;
+        for (double posterior : network.getPosteriors(0)) {
+            sum += posterior;
+        }
+        Assert.assertEquals("The slot should be a distribution.", 1, sum, 1E-9);
+        Assert.assertEquals("Posteriors should be normalized.", 1 / (1 + lattice.getPosterior(to)),
+                network.getPosteriors(0)[0], 1E-9);
+        Assert.assertEquals("The best words should form the best hypothesis.", "go left", network.getBestHypothesis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTopologicalOrder() {
+        WordLattice lattice = new WordLattice();
+        int first = lattice.addNode("go", false, 0, 1);
+        int second = lattice.addNode("left", false, 2, 3);
+        lattice.addEdge(second, first, 0, 0);
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        WordLattice lattice = createLattice();
+        lattice.computePosteriors(0);
+        Result r = new Result();
+        r.addResult("go left");
+        r.setLattice(lattice);
+        r.setConfusionNetwork(lattice.toConfusionNetwork(0));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(r);
+        out.close();
+        Result read = (Result) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        Assert.assertEquals("The lattice should be stored with the result.",
+                lattice.getNbest(10, 0), read.getLattice().getNbest(10, 0));
+        Assert.assertEquals("The confusion network should be stored with the result.", "go left",
+                read.getConfusionNetwork().getBestHypothesis());
+    }
+}
@@ -0,0 +1,68 @@
+package de.unihamburg.informatik.wtm.docks.frontend;
+
+import de.unihamburg.informatik.wtm.docks.data.PhoneData;
+import edu.cmu.sphinx.frontend.Data;
+import edu.cmu.sphinx.frontend.DataEndSignal;
+import edu.cmu.sphinx.frontend.DataStartSignal;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PhoneFrontEndTest {
+
+    private static List<Data> drain(PhoneFrontEnd pfe) {
+        List<Data> frames = new ArrayList<Data>();
+        Data d;
+        while ((d = pfe.getData()) != null) {
+            frames.add(d);
+        }
+        return frames;
+    }
+
+    @Test
+    public void testFrames() {
+        PhoneFrontEnd pfe = new PhoneFrontEnd();
+        pfe.addPhonemes(new String[]{"G", "OW"});
+        List<Data> frames = drain(pfe);
+
+        String[] expected = new String[]{"SIL", "G", "G", "OW", "OW", "SIL", "SIL", "SIL"};
+        Assert.assertEquals("Every phoneme should be doubled and padded with silence.", expected.length + 2, frames.size());
+        Assert.assertTrue("Utterance should start with a start signal.", frames.get(0) instanceof DataStartSignal);
+        Assert.assertTrue("Utterance should end with an end signal.", frames.get(frames.size() - 1) instanceof DataEndSignal);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals("Frame " + i + " should hold the phoneme.", expected[i], frames.get(i + 1).toString());
+        }
+    }
+
+    @Test
+    public void testReuseAndGrowth() {
+        PhoneFrontEnd pfe = new PhoneFrontEnd();
+        pfe.addPhonemes(new String[]{"AH"});
+        List<Data> first = drain(pfe);
+        pfe.addPhonemes(new String[]{"IY"});
+        List<Data> second = drain(pfe);
+        int reused = 0;
+        for (Data d : second) {
+            if (d instanceof PhoneData && first.contains(d)) {
+                reused++;
+            }
+        }
+        Assert.assertTrue("Frames should be reused.", reused > 0);
+
+        // queue more than the initial capacity, partly behind frames not read yet
+        String[] phonemes = new String[100];
+        for (int i = 0; i < phonemes.length; i++) {
+            phonemes[i] = i % 2 == 0 ? "S" : "T";
+        }
+        pfe.addPhonemes(new String[]{"P"});
+        pfe.getData();
+        pfe.addPhonemes(phonemes);
+        List<Data> frames = drain(pfe);
+        Assert.assertEquals("All frames should be kept when growing.", 7 + 2 * phonemes.length + 6, frames.size());
+        Assert.assertEquals("Order should be kept when growing.", "P", frames.get(1).toString());
+        Assert.assertEquals("Order should be kept when growing.", "S", frames.get(9).toString());
+        Assert.assertEquals("Order should be kept when growing.", "T", frames.get(11).toString());
+    }
+}
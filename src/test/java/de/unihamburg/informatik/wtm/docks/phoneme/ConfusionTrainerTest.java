@@ -0,0 +1,94 @@
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import edu.cmu.sphinx.util.NISTAlign;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ConfusionTrainerTest {
+
+    private static final int N = PhonemeSubstitution.NUMBER_OF_PHONEMES;
+
+    private static long count(long[] counts, String reference, String input) {
+        return counts[PhonemeSubstitution.getPhonemeId(reference) * N + PhonemeSubstitution.getPhonemeId(input)];
+    }
+
+    @Test
+    public void testCountSubstitutions() {
+        long[] counts = new long[N * N];
+        NISTAlign aligner = new NISTAlign(true, true);
+        // "stop" recognized as "top" and "step"
+        ConfusionTrainer.countSubstitutions(aligner, new String[]{"S", "T", "AA", "P"}, new String[]{"T", "AA", "P"}, counts);
+        ConfusionTrainer.countSubstitutions(aligner, new String[]{"S", "T", "AA", "P"}, new String[]{"S", "T", "EH", "P"},
+                counts);
+
+        Assert.assertEquals("Matches should be counted.", 2, count(counts, "T", "T"));
+        Assert.assertEquals("Matches should be counted.", 2, count(counts, "P", "P"));
+        Assert.assertEquals("Matches should be counted.", 1, count(counts, "S", "S"));
+        Assert.assertEquals("Substitutions should be counted.", 1, count(counts, "AA", "EH"));
+        Assert.assertEquals("Deletions should not be aligned to a phoneme.", 0, count(counts, "S", "T"));
+
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        Assert.assertEquals("Every aligned pair should be counted once.", 7, total);
+    }
+
+    @Test
+    public void testTrain() throws IOException {
+        final Map<String, String[]> dictionary = new HashMap<String, String[]>();
+        dictionary.put("stop", new String[]{"S", "T", "AA", "P"});
+        dictionary.put("top", new String[]{"T", "AA", "P"});
+        dictionary.put("step", new String[]{"S", "T", "EH", "P"});
+        PhonemeCreator pc = new PhonemeCreator(null, "dictionary") {
+            @Override
+            public String[] getWordPhonemes(String word) {
+                return dictionary.get(word);
+            }
+        };
+
+        File corpus = File.createTempFile("confusion", ".refhyp");
+        try {
+            FileUtils.writeStringToFile(corpus, "Top;stop\nstep;Stop!\nno reference\n");
+            long[] counts = new ConfusionTrainer(pc, 2).train(corpus.getPath());
+            long[] expected = new long[N * N];
+            NISTAlign aligner = new NISTAlign(true, true);
+            ConfusionTrainer.countSubstitutions(aligner, dictionary.get("stop"), dictionary.get("top"), expected);
+            ConfusionTrainer.countSubstitutions(aligner, dictionary.get("stop"), dictionary.get("step"), expected);
+            Assert.assertArrayEquals("Lines should be converted like recognition results.", expected, counts);
+        } finally {
+            corpus.delete();
+        }
+    }
+
+    @Test
+    public void testTableFromCounts() throws IOException {
+        long[] counts = new long[N * N];
+        int aa = PhonemeSubstitution.getPhonemeId("AA");
+        int eh = PhonemeSubstitution.getPhonemeId("EH");
+        counts[aa * N + aa] = 10;
+        counts[aa * N + eh] = 5;
+
+        PhonemeSubstitution table = PhonemeSubstitution.fromCounts(counts);
+        Assert.assertEquals("Correct recognitions should get the best score.", 0.9, table.getScore("AA", "AA"), 1e-9);
+        Assert.assertEquals("Substitutions should be scored relative to correct recognitions.",
+                0.5, table.getScore("AA", "EH"), 1e-9);
+        Assert.assertEquals("Unseen substitutions should get the lowest score.", 0.1, table.getScore("AA", "P"), 1e-9);
+
+        File file = File.createTempFile("confusion", PhonemeSubstitution.TABLE_EXTENSION);
+        try {
+            table.save(file.getPath());
+            Assert.assertEquals("Saved table should be loaded unchanged.", table.getLogScore(aa, eh),
+                    PhonemeSubstitution.load(file.getPath()).getLogScore(aa, eh), 0f);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import de.unihamburg.informatik.wtm.docks.postprocessor.levenshteinbased.Levenshtein;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MappedPhonemeDBTest {
+
+    private static PhonemeContainer container(String raw, String words, String... phonemes) {
+        PhonemeContainer pc = new PhonemeContainer(words.split(" "));
+        pc.setRawResult(raw);
+        pc.addPhonemesNoJep(phonemes);
+        return pc;
+    }
+
+    @Test
+    public void testWriteAndOpen() throws IOException {
+        List<PhonemeContainer> phonemes = new ArrayList<PhonemeContainer>();
+        phonemes.add(container("Yes", "yes", "Y", "EH", "S"));
+        phonemes.add(container("I'm done", "im done", "AY", "M", "D", "AH", "N"));
+        phonemes.add(container("No", "no", "N", "OW"));
+
+        File file = File.createTempFile("docks", MappedPhonemeDB.EXTENSION);
+        file.deleteOnExit();
+        MappedPhonemeDB.write(file.getPath(), phonemes, "model", 42);
+        MappedPhonemeDB db = MappedPhonemeDB.open(file.getPath());
+
+        Assert.assertEquals("Size should match the number of written entries.", phonemes.size(), db.size());
+
+        String[] input = new String[]{"Y", "EH", "S", "UNKNOWN"};
+        int[] encoded = db.encode(input);
+        int[] row = new int[encoded.length + 1];
+        for (int i = 0; i < phonemes.size(); i++) {
+            PhonemeContainer pc = phonemes.get(i);
+            Assert.assertEquals("Results should be preserved.", pc.getResult(), db.getResult(i));
+            Assert.assertEquals("Raw results should be preserved.", pc.getRawResult(), db.getRawResult(i));
+            Assert.assertEquals("Phoneme count should be preserved.", pc.getPhonemes().length, db.getPhonemeCount(i));
+            Assert.assertEquals("Mapped distance should match the array based distance.",
+                    Levenshtein.diff(input, pc.getPhonemes()), db.distance(i, encoded, row));
+        }
+    }
+
+    @Test
+    public void testSource() throws IOException {
+        List<PhonemeContainer> phonemes = new ArrayList<PhonemeContainer>();
+        phonemes.add(container("No", "no", "N", "OW"));
+
+        File file = File.createTempFile("docks", MappedPhonemeDB.EXTENSION);
+        file.deleteOnExit();
+        MappedPhonemeDB.write(file.getPath(), phonemes, "model", 42);
+        MappedPhonemeDB db = MappedPhonemeDB.open(file.getPath());
+        Assert.assertTrue("Data base should be up to date for its source.", db.isUpToDate("model", 42));
+        Assert.assertFalse("Data base should be outdated for another sentence list.", db.isUpToDate("model", 43));
+        Assert.assertFalse("Data base should be outdated for another G2P model.", db.isUpToDate("other", 42));
+        Assert.assertEquals("Entries should follow the header.", "no", db.getResult(0));
+
+        MappedPhonemeDB.write(file.getPath(), phonemes, null, 42);
+        Assert.assertFalse("Data base of an unknown G2P model should be outdated.",
+                MappedPhonemeDB.open(file.getPath()).isUpToDate(null, 42));
+    }
+
+    @Test
+    public void testReplaceMapped() throws IOException {
+        List<PhonemeContainer> phonemes = new ArrayList<PhonemeContainer>();
+        phonemes.add(container("I'm done", "im done", "AY", "M", "D", "AH", "N"));
+        phonemes.add(container("No", "no", "N", "OW"));
+
+        File directory = new File(System.getProperty("java.io.tmpdir"), "docks" + System.nanoTime());
+        Assert.assertTrue("Directory should be created.", directory.mkdir());
+        File file = new File(directory, "sentences" + MappedPhonemeDB.EXTENSION);
+        try {
+            MappedPhonemeDB.write(file.getPath(), phonemes, "model", 42);
+            MappedPhonemeDB mapped = MappedPhonemeDB.open(file.getPath());
+
+            MappedPhonemeDB.write(file.getPath(), phonemes.subList(1, 2), "model", 43);
+            Assert.assertEquals("A mapped data base should keep its version.", "no", mapped.getResult(1));
+            Assert.assertTrue("A mapped data base should keep its version.", mapped.isUpToDate("model", 42));
+            Assert.assertTrue("The file should be replaced.", MappedPhonemeDB.open(file.getPath()).isUpToDate("model", 43));
+            Assert.assertEquals("No temporary files should be left.", 1, directory.list().length);
+        } finally {
+            file.delete();
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+
+public class PhonemeContainerTest {
+
+    // fields of PhonemeContainer in caches of earlier versions
+    private static class EarlierContainer implements Serializable {
+
+        private static final long serialVersionUID = 3851781084055799229L;
+        private String[] phonemes;
+        private String rawResult;
+        private String[] words;
+        private String[] phonemesSorted;
+        private ArrayList<String> phonemesList = new ArrayList<String>();
+    }
+
+    @Test
+    public void testSharedWords() {
+        PhonemeContainer first = new PhonemeContainer(new String[]{new String("go"), "left"});
+        PhonemeContainer second = new PhonemeContainer(new String[]{new String("go"), "right"});
+        Assert.assertNotSame("Words should not be interned by default.", first.getWords()[0], second.getWords()[0]);
+
+        first.internWords();
+        second.internWords();
+        Assert.assertSame("Equal interned words should be shared.", first.getWords()[0], second.getWords()[0]);
+        Assert.assertEquals("Result should join the words.", "go left", first.getResult());
+        Assert.assertArrayEquals("Words should be preserved.", new String[]{"go", "right"}, second.getWords());
+
+        first.setRawResult("Go left!");
+        second.setRawResult("go right");
+        Assert.assertEquals("Raw result should be kept.", "Go left!", first.getRawResult());
+        Assert.assertEquals("Raw result equal to the result should be returned.", "go right", second.getRawResult());
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        PhonemeContainer pc = new PhonemeContainer(new String[]{"im", "done"});
+        pc.setRawResult("I'm done");
+        pc.addPhonemesNoJep(new String[]{"AY", "M", "D", "AH", "N"});
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(pc);
+        out.close();
+        PhonemeContainer read = (PhonemeContainer) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        Assert.assertArrayEquals("Words should be preserved.", pc.getWords(), read.getWords());
+        Assert.assertEquals("Result should be preserved.", pc.getResult(), read.getResult());
+        Assert.assertEquals("Raw result should be preserved.", pc.getRawResult(), read.getRawResult());
+        Assert.assertArrayEquals("Phonemes should be preserved.", pc.getPhonemes(), read.getPhonemes());
+    }
+
+    @Test
+    public void testEarlierVersion() throws IOException, ClassNotFoundException {
+        EarlierContainer earlier = new EarlierContainer();
+        earlier.phonemes = new String[]{"N", "OW"};
+        earlier.rawResult = "No!";
+        earlier.words = new String[]{"no"};
+        earlier.phonemesSorted = new String[]{"N OW"};
+        earlier.phonemesList.add("N");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(earlier);
+        out.close();
+        byte[] stream = replaceClassName(bytes.toByteArray(), EarlierContainer.class.getName(),
+                PhonemeContainer.class.getName());
+        PhonemeContainer read = (PhonemeContainer) new ObjectInputStream(new ByteArrayInputStream(stream)).readObject();
+
+        Assert.assertArrayEquals("Words should be read.", new String[]{"no"}, read.getWords());
+        Assert.assertEquals("Raw result should be read.", "No!", read.getRawResult());
+        Assert.assertArrayEquals("Phonemes should be read.", new String[]{"N", "OW"}, read.getPhonemes());
+    }
+
+    // class names are stored as UTF strings with their length in front
+    private static byte[] replaceClassName(byte[] stream, String from, String to) throws IOException {
+        byte[] search = utf(from);
+        for (int i = 0; i + search.length <= stream.length; i++) {
+            int j = 0;
+            while (j < search.length && stream[i + j] == search[j]) {
+                j++;
+            }
+            if (j == search.length) {
+                ByteArrayOutputStream replaced = new ByteArrayOutputStream();
+                replaced.write(stream, 0, i);
+                replaced.write(utf(to));
+                replaced.write(stream, i + search.length, stream.length - i - search.length);
+                return replaced.toByteArray();
+            }
+        }
+        throw new IllegalArgumentException(from + " not found");
+    }
+
+    private static byte[] utf(String s) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(s);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,103 @@
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PhonemeCreatorCacheTest {
+
+    private String sentenceFile;
+
+    @Before
+    public void setUp() throws IOException {
+        File file = File.createTempFile("sentences", ".txt");
+        file.deleteOnExit();
+        sentenceFile = file.getPath().substring(0, file.getPath().length() - ".txt".length());
+        new File(sentenceFile + ".ser").deleteOnExit();
+    }
+
+    @Test
+    public void testIncrementalRebuild() throws IOException {
+        writeSentences("go left", "go right", "stop");
+        List<String> converted = load("model1");
+        Assert.assertEquals("All words should be converted without a cache.",
+                Arrays.asList("go", "left", "right", "stop"), sorted(converted));
+
+        // change a line, add a line and remove a line
+        writeSentences("go left", "turn right", "stand up");
+        PhonemeCreator pc = new CountingPhonemeCreator("model1", converted = new ArrayList<String>());
+        pc.loadSentenceFile(sentenceFile, 1);
+        Assert.assertEquals("Only the words of changed lines should be converted.",
+                Arrays.asList("right", "stand", "turn", "up"), sorted(converted));
+        Assert.assertEquals("The data base should contain the new lines.", 3, pc.getPhonemeDb().getPhonemes().size());
+        Assert.assertArrayEquals("Phonemes of an unchanged line should be kept.",
+                new String[]{"G", "O", "L", "E", "F", "T"},
+                pc.getPhonemeDb().getCachedPhonemes("go left").getPhonemes());
+        Assert.assertNull("Removed lines should not be kept.", pc.getPhonemeDb().getCachedPhonemes("stop"));
+
+        Assert.assertTrue("An unchanged list should not be converted again.", load("model1").isEmpty());
+    }
+
+    @Test
+    public void testModelChange() throws IOException {
+        writeSentences("go left", "stop");
+        load("model1");
+
+        Assert.assertEquals("A different model should convert all lines again.",
+                Arrays.asList("go", "left", "stop"), sorted(load("model2")));
+    }
+
+    private List<String> load(String modelVersion) {
+        List<String> converted = new ArrayList<String>();
+        new CountingPhonemeCreator(modelVersion, converted).loadSentenceFile(sentenceFile, 1);
+        return converted;
+    }
+
+    private void writeSentences(String... lines) throws IOException {
+        FileWriter writer = new FileWriter(sentenceFile + ".txt");
+        try {
+            for (String line : lines) {
+                writer.write(line + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static List<String> sorted(List<String> words) {
+        List<String> sorted = new ArrayList<String>(words);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    // one phoneme per letter, records every converted word
+    private static class CountingPhonemeCreator extends PhonemeCreator {
+
+        private final List<String> converted;
+
+        CountingPhonemeCreator(String modelVersion, List<String> converted) {
+            super(null, modelVersion);
+            this.converted = converted;
+        }
+
+        @Override
+        public String[] getWordPhonemes(String word) {
+            synchronized (converted) {
+                converted.add(word);
+            }
+            String[] phonemes = new String[word.length()];
+            for (int i = 0; i < phonemes.length; i++) {
+                phonemes[i] = String.valueOf(word.charAt(i)).toUpperCase();
+            }
+            return phonemes;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package de.unihamburg.informatik.wtm.docks.phoneme;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -36,4 +38,65 @@ public class PhonemeCreatorTest {
             Assert.assertEquals("Phoneme's words should match the initial word.", phonemeWord.toLowerCase(), word.toLowerCase());
         }
     }
+
+    @Test
+    public void testSentenceAndHypothesisPhonemes() {
+        PhonemeCreator pc = createLetterPhonemeCreator();
+
+        List<PhonemeContainer> sentences = new BulkPhonemeCreator(pc, 2).getPhonemes(
+                Arrays.asList("Go  left!", "stop").iterator());
+        List<PhonemeContainer> hypotheses = pc.getPhonemes(Arrays.asList("go left", "Stop."));
+
+        Assert.assertEquals("Sentences and hypotheses should have the same size.", sentences.size(), hypotheses.size());
+        for (int i = 0; i < sentences.size(); i++) {
+            Assert.assertArrayEquals("A sentence and the same hypothesis should have the same phonemes.",
+                    sentences.get(i).getPhonemes(), hypotheses.get(i).getPhonemes());
+        }
+        Assert.assertArrayEquals("Phonemes of the words should be joined.",
+                new String[]{"G", "O", "L", "E", "F", "T"}, hypotheses.get(0).getPhonemes());
+    }
+
+    @Test
+    public void testGetPhonemesOrder() {
+        PhonemeCreator pc = createLetterPhonemeCreator();
+        String[] words = {"go", null, "left", "stop", null, "turn", "right", "up", "down"};
+        Assert.assertTrue("The test list should be longer than the threshold.",
+                words.length > PhonemeCreator.PARALLEL_THRESHOLD);
+
+        // below and above the threshold for the parallel conversion
+        for (int size : new int[]{PhonemeCreator.PARALLEL_THRESHOLD - 1, words.length}) {
+            List<String> rawResults = new ArrayList<String>(Arrays.asList(words).subList(0, size));
+            List<String> copy = new ArrayList<String>(rawResults);
+
+            List<PhonemeContainer> phonemes = pc.getPhonemes(rawResults);
+            Assert.assertEquals("The input list should not be modified.", copy, rawResults);
+
+            List<String> expected = new ArrayList<String>();
+            for (String word : rawResults) {
+                if (word != null) {
+                    expected.add(word);
+                }
+            }
+            Assert.assertEquals("Null entries should be skipped.", expected.size(), phonemes.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals("The order of the input should be kept.", expected.get(i), phonemes.get(i).getRawResult());
+                Assert.assertArrayEquals("Phonemes should belong to their raw result.",
+                        pc.getWordPhonemes(expected.get(i)), phonemes.get(i).getPhonemes());
+            }
+        }
+    }
+
+    // one phoneme per letter, so no G2P model is needed
+    private static PhonemeCreator createLetterPhonemeCreator() {
+        return new PhonemeCreator(null, "letters") {
+            @Override
+            public String[] getWordPhonemes(String word) {
+                String[] phonemes = new String[word.length()];
+                for (int i = 0; i < phonemes.length; i++) {
+                    phonemes[i] = String.valueOf(word.charAt(i)).toUpperCase();
+                }
+                return phonemes;
+            }
+        };
+    }
 }
@@ -0,0 +1,56 @@
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PhonemeSequencePoolTest {
+
+    @Test
+    public void testIntern() {
+        PhonemeSequencePool pool = PhonemeSequencePool.getInstance();
+        String[] first = pool.intern(new String[]{"G", "OW", "L", "EH", "F", "T"});
+        String[] second = pool.intern(new String[]{"G", "OW", "L", "EH", "F", "T"});
+        String[] other = pool.intern(new String[]{"G", "OW", "R", "AY", "T"});
+
+        Assert.assertSame("Equal sequences should be shared.", first, second);
+        Assert.assertNotSame("Different sequences should not be shared.", first, other);
+        Assert.assertSame("Equal phonemes should be shared.", first[0], other[0]);
+    }
+
+    @Test
+    public void testSharedBetweenDataBases() throws IOException, ClassNotFoundException {
+        PhonemeDB first = createDb();
+        PhonemeDB second = createDb();
+        Assert.assertSame("Data bases should share equal sequences.",
+                first.getPhonemes().get(0).getPhonemes(), second.getPhonemes().get(0).getPhonemes());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(first);
+        out.close();
+        PhonemeDB read = (PhonemeDB) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        Assert.assertSame("Deserialized data bases should share equal sequences.",
+                first.getPhonemes().get(0).getPhonemes(), read.getPhonemes().get(0).getPhonemes());
+        Assert.assertSame("Deserialized data bases should share equal words.",
+                first.getPhonemes().get(0).getWords()[0], read.getPhonemes().get(0).getWords()[0]);
+    }
+
+    private static PhonemeDB createDb() {
+        PhonemeContainer pc = new PhonemeContainer(new String[]{"stop"});
+        pc.addPhonemesNoJep(new String[]{"S", "T", "AA", "P"});
+        List<PhonemeContainer> phonemes = new ArrayList<PhonemeContainer>();
+        phonemes.add(pc);
+        PhonemeDB db = new PhonemeDB();
+        db.setPhonemes(phonemes);
+        return db;
+    }
+}
@@ -0,0 +1,107 @@
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import de.unihamburg.informatik.wtm.docks.data.PhoneData;
+import edu.cmu.sphinx.util.LogMath;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PhonemeSubstitutionTest {
+
+    @Test
+    public void testPhonemeIds() {
+        for (int i = 0; i < PhonemeSubstitution.NUMBER_OF_PHONEMES; i++) {
+            Assert.assertEquals("ID should map back to the phoneme.", i,
+                    PhonemeSubstitution.getPhonemeId(PhonemeSubstitution.getPhoneme(i)));
+        }
+        Assert.assertEquals("Unknown phonemes should have no ID.", -1, PhonemeSubstitution.getPhonemeId("XX"));
+    }
+
+    @Test
+    public void testLogScores() {
+        LogMath logMath = LogMath.getInstance();
+        int[] methods = new int[]{PhonemeSubstitution.STANDARD, PhonemeSubstitution.IPA_TABLE};
+        for (int method : methods) {
+            PhonemeSubstitution substitution = PhonemeSubstitution.getInstance(method);
+            for (int i = 0; i < PhonemeSubstitution.NUMBER_OF_PHONEMES; i++) {
+                String p1 = PhonemeSubstitution.getPhoneme(i);
+                PhoneData data = new PhoneData(p1, method);
+                for (int j = 0; j < PhonemeSubstitution.NUMBER_OF_PHONEMES; j++) {
+                    String p2 = PhonemeSubstitution.getPhoneme(j);
+                    float expected = logMath.linearToLog(substitution.getScore(p1, p2));
+                    Assert.assertEquals("Log score should match the score of " + p1 + " and " + p2 + ".",
+                            expected, substitution.getLogScore(i, j), 0f);
+                    Assert.assertEquals("Confusion score by ID should match the score by name.",
+                            data.getConfusionScore(p2, 0), data.getConfusionScore(j), 0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFrameScores() {
+        PhonemeSubstitution substitution = PhonemeSubstitution.getInstance(PhonemeSubstitution.IPA_TABLE);
+        int aa = PhonemeSubstitution.getPhonemeId("AA");
+        int eh = PhonemeSubstitution.getPhonemeId("EH");
+        PhoneData data = new PhoneData("AA", PhonemeSubstitution.IPA_TABLE);
+        Assert.assertEquals("Frame scores should match the score table.",
+                substitution.getLogScore(aa, eh), data.getConfusionScore(eh), 0f);
+
+        data.set("EH", PhonemeSubstitution.IPA_TABLE);
+        Assert.assertEquals("Reused frames should score their new phoneme.",
+                substitution.getLogScore(eh, aa), data.getConfusionScore(aa), 0f);
+
+        data.set("XX", PhonemeSubstitution.IPA_TABLE);
+        Assert.assertEquals("Unknown phonemes should match nothing.",
+                LogMath.LOG_ZERO, data.getConfusionScore(aa), 0f);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        PhonemeSubstitution ipa = PhonemeSubstitution.getInstance(PhonemeSubstitution.IPA_TABLE);
+        File file = File.createTempFile("ipa", PhonemeSubstitution.TABLE_EXTENSION);
+        try {
+            ipa.save(file.getPath());
+            PhonemeSubstitution loaded = PhonemeSubstitution.load(file.getPath());
+            for (int i = 0; i < PhonemeSubstitution.NUMBER_OF_PHONEMES; i++) {
+                for (int j = 0; j < PhonemeSubstitution.NUMBER_OF_PHONEMES; j++) {
+                    Assert.assertEquals("Loaded table should equal the saved one.",
+                            ipa.getLogScore(i, j), loaded.getLogScore(i, j), 0f);
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testConcurrentGetInstance() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<PhonemeSubstitution>> futures = new ArrayList<Future<PhonemeSubstitution>>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(pool.submit(new Callable<PhonemeSubstitution>() {
+                    @Override
+                    public PhonemeSubstitution call() {
+                        return PhonemeSubstitution.getInstance(PhonemeSubstitution.STANDARD);
+                    }
+                }));
+            }
+            PhonemeSubstitution first = futures.get(0).get();
+            for (Future<PhonemeSubstitution> future : futures) {
+                Assert.assertSame("All threads should get the same instance.", first, future.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertNull("Unknown methods should have no instance.", PhonemeSubstitution.getInstance(7));
+    }
+}
@@ -0,0 +1,89 @@
+package de.unihamburg.informatik.wtm.docks.phoneme;
+
+import de.unihamburg.informatik.wtm.docks.postprocessor.levenshteinbased.Levenshtein;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class PronunciationVariantsTest {
+
+    private static final String[] SYMBOLS = new String[]{"AH", "B", "D", "EH", "N", "S", "T"};
+
+    private static PronunciationVariants variants(String... variants) {
+        List<String[]> list = new ArrayList<String[]>();
+        for (String variant : variants) {
+            list.add(variant.isEmpty() ? new String[0] : variant.split(" "));
+        }
+        return new PronunciationVariants(list);
+    }
+
+    @Test
+    public void testSharedPrefixAndSuffix() {
+        PronunciationVariants v = variants("T AH M EY T OW", "T AH M AA T OW", "T AH M EY T OW");
+
+        Assert.assertEquals("Equal variants should be stored once.", 2, v.getNumberOfVariants());
+        Assert.assertEquals("Variants should share their common prefix and suffix.", 1 + 3 + 2 + 2, v.size());
+        Assert.assertEquals("Variants differing early should share their suffix.", 1 + 2 + 5,
+                variants("EH K S T R AH", "IH K S T R AH").size());
+        Assert.assertEquals("Equal endings of variants should be shared.", 1 + 2 + 1,
+                variants("N OW", "N OW T", "T").size());
+        for (int node = 1; node < v.size(); node++) {
+            for (int p = 0; p < v.getNumberOfParents(node); p++) {
+                Assert.assertTrue("Parents should precede their children.", v.getParent(node, p) < node);
+            }
+        }
+    }
+
+    @Test
+    public void testLatticeDistance() {
+        Random random = new Random(7);
+        // shared by all sentences, like the work array of a hypothesis
+        int[] rows = new int[(1 + 3 * 4 + 1) * (8 + 1)];
+        for (int n = 0; n < 500; n++) {
+            // up to three words with up to three variants each
+            List<List<String[]>> sentence = new ArrayList<List<String[]>>();
+            PronunciationVariants[] words = new PronunciationVariants[1 + random.nextInt(3)];
+            for (int w = 0; w < words.length; w++) {
+                List<String[]> wordVariants = new ArrayList<String[]>();
+                int numberOfVariants = 1 + random.nextInt(3);
+                for (int v = 0; v < numberOfVariants; v++) {
+                    wordVariants.add(randomSequence(random, 1 + random.nextInt(4)));
+                }
+                sentence.add(wordVariants);
+                words[w] = new PronunciationVariants(wordVariants);
+            }
+            String[] reference = randomSequence(random, random.nextInt(8));
+
+            int expected = bruteForce(reference, sentence, 0, new ArrayList<String>());
+            Assert.assertEquals("Lattice distance should be the minimum over all combinations of variants.",
+                    expected, Levenshtein.diff(reference, words));
+            Assert.assertEquals("A reused work array should give the same distance.",
+                    expected, Levenshtein.diff(reference, words, rows));
+        }
+    }
+
+    private static String[] randomSequence(Random random, int length) {
+        String[] sequence = new String[length];
+        for (int i = 0; i < length; i++) {
+            sequence[i] = SYMBOLS[random.nextInt(SYMBOLS.length)];
+        }
+        return sequence;
+    }
+
+    private static int bruteForce(String[] reference, List<List<String[]>> sentence, int word, List<String> prefix) {
+        if (word == sentence.size()) {
+            return Levenshtein.diff(reference, prefix.toArray(new String[prefix.size()]));
+        }
+        int best = Integer.MAX_VALUE;
+        for (String[] variant : sentence.get(word)) {
+            List<String> next = new ArrayList<String>(prefix);
+            next.addAll(Arrays.asList(variant));
+            best = Math.min(best, bruteForce(reference, sentence, word + 1, next));
+        }
+        return best;
+    }
+}
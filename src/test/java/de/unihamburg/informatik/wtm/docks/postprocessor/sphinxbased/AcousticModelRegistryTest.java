@@ -0,0 +1,191 @@
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import edu.cmu.sphinx.linguist.acoustic.AcousticModel;
+import edu.cmu.sphinx.linguist.acoustic.HMM;
+import edu.cmu.sphinx.linguist.acoustic.HMMPosition;
+import edu.cmu.sphinx.linguist.acoustic.Unit;
+import edu.cmu.sphinx.linguist.acoustic.UnitManager;
+import edu.cmu.sphinx.util.props.Configurable;
+import edu.cmu.sphinx.util.props.ConfigurationManager;
+import edu.cmu.sphinx.util.props.PropertyException;
+import edu.cmu.sphinx.util.props.PropertySheet;
+import edu.cmu.sphinx.util.props.S4Component;
+import edu.cmu.sphinx.util.props.S4String;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Properties;
+
+public class AcousticModelRegistryTest {
+
+    public static class Model implements AcousticModel {
+
+        @S4String(mandatory = false)
+        public static final String PROP_LOCATION = "location";
+
+        @S4String(mandatory = false)
+        public static final String PROP_DATA_LOCATION = "dataLocation";
+
+        @S4Component(type = UnitManager.class)
+        public static final String PROP_UNIT_MANAGER = "unitManager";
+
+        int loaded;
+
+        @Override
+        public void newProperties(PropertySheet ps) throws PropertyException {
+        }
+
+        @Override
+        public void allocate() {
+            loaded++;
+        }
+
+        @Override
+        public void deallocate() {
+        }
+
+        @Override
+        public String getName() {
+            return "model";
+        }
+
+        @Override
+        public HMM lookupNearestHMM(Unit unit, HMMPosition position, boolean exactMatch) {
+            return null;
+        }
+
+        @Override
+        public Iterator<HMM> getHMMIterator() {
+            return null;
+        }
+
+        @Override
+        public Iterator<Unit> getContextIndependentUnitIterator() {
+            return null;
+        }
+
+        @Override
+        public int getLeftContextSize() {
+            return 1;
+        }
+
+        @Override
+        public int getRightContextSize() {
+            return 1;
+        }
+
+        @Override
+        public Properties getProperties() {
+            return new Properties();
+        }
+    }
+
+    public static class Search implements Configurable {
+
+        @S4Component(type = AcousticModel.class)
+        public static final String PROP_MODEL = "model";
+
+        @S4Component(type = UnitManager.class)
+        public static final String PROP_UNIT_MANAGER = "unitManager";
+
+        AcousticModel model;
+        UnitManager unitManager;
+
+        @Override
+        public void newProperties(PropertySheet ps) throws PropertyException {
+            model = (AcousticModel) ps.getComponent(PROP_MODEL);
+            unitManager = (UnitManager) ps.getComponent(PROP_UNIT_MANAGER);
+        }
+    }
+
+    private static void writeConfig(File config, String location, String dataLocation) throws IOException {
+        FileUtils.writeStringToFile(config, "<config>\n"
+                + "<property name=\"amLocation\" value=\"" + location + "\"/>\n"
+                + "<component name=\"search\" type=\"" + Search.class.getName() + "\">\n"
+                + "  <property name=\"model\" value=\"acousticModel\"/>\n"
+                + "  <property name=\"unitManager\" value=\"unitManager\"/>\n"
+                + "</component>\n"
+                + "<component name=\"acousticModel\" type=\"" + Model.class.getName() + "\">\n"
+                + "  <property name=\"location\" value=\"${amLocation}\"/>\n"
+                + "  <property name=\"dataLocation\" value=\"" + dataLocation + "\"/>\n"
+                + "  <property name=\"unitManager\" value=\"unitManager\"/>\n"
+                + "</component>\n"
+                + "<component name=\"unitManager\" type=\"" + UnitManager.class.getName() + "\"/>\n"
+                + "</config>\n");
+    }
+
+    @Test
+    public void testShare() throws IOException {
+        String location = "test:" + System.nanoTime();
+        AcousticModelRegistry registry = AcousticModelRegistry.getInstance();
+        File config = File.createTempFile("registry", ".xml");
+        try {
+            writeConfig(config, location, "cd_continuous_8gau");
+            int registered = registry.size();
+            ConfigurationManager first = new ConfigurationManager(config.toURI().toURL());
+            registry.share(first);
+            ConfigurationManager second = new ConfigurationManager(config.toURI().toURL());
+            registry.share(second);
+            Assert.assertEquals("The model should be registered once.", registered + 1, registry.size());
+
+            Search firstSearch = (Search) first.lookup("search");
+            Search secondSearch = (Search) second.lookup("search");
+            Assert.assertSame("Models of the same location should be shared.", firstSearch.model, secondSearch.model);
+            Assert.assertSame("Unit managers of shared models should be shared.", firstSearch.unitManager,
+                    secondSearch.unitManager);
+
+            AcousticModelRegistry.SharedAcousticModel shared = (AcousticModelRegistry.SharedAcousticModel) firstSearch.model;
+            Model model = (Model) shared.getModel();
+            firstSearch.model.allocate();
+            secondSearch.model.allocate();
+            Assert.assertEquals("The model should be loaded once.", 1, model.loaded);
+            Assert.assertEquals("All users should be counted.", 2, shared.getUsers());
+
+            firstSearch.model.deallocate();
+            Assert.assertEquals("The model should stay registered while used.", registered + 1, registry.size());
+            secondSearch.model.deallocate();
+            Assert.assertEquals("The model should be released by the last user.", registered, registry.size());
+
+            secondSearch.model.allocate();
+            Assert.assertEquals("A released model should be registered again.", registered + 1, registry.size());
+            secondSearch.model.deallocate();
+        } finally {
+            config.delete();
+        }
+    }
+
+    @Test
+    public void testOtherConfiguration() throws IOException {
+        String location = "test:" + System.nanoTime();
+        AcousticModelRegistry registry = AcousticModelRegistry.getInstance();
+        File config = File.createTempFile("registry", ".xml");
+        try {
+            int registered = registry.size();
+            writeConfig(config, location, "cd_continuous_8gau");
+            ConfigurationManager first = new ConfigurationManager(config.toURI().toURL());
+            registry.share(first);
+            writeConfig(config, location, "ci_continuous_8gau");
+            ConfigurationManager second = new ConfigurationManager(config.toURI().toURL());
+            registry.share(second);
+
+            Assert.assertEquals("Differently configured models of a location should be registered separately.",
+                    registered + 2, registry.size());
+            AcousticModel firstModel = ((Search) first.lookup("search")).model;
+            AcousticModel secondModel = ((Search) second.lookup("search")).model;
+            Assert.assertNotSame("Differently configured models of a location should not be shared.",
+                    firstModel, secondModel);
+
+            for (AcousticModel model : new AcousticModel[]{firstModel, secondModel}) {
+                model.allocate();
+                model.deallocate();
+            }
+            Assert.assertEquals("Both models should be released.", registered, registry.size());
+        } finally {
+            config.delete();
+        }
+    }
+}
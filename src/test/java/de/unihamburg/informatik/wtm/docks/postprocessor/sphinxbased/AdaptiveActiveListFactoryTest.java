@@ -0,0 +1,70 @@
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import edu.cmu.sphinx.decoder.search.ActiveList;
+import edu.cmu.sphinx.decoder.search.Token;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveActiveListFactoryTest {
+
+    private static Token newToken(float score) {
+        return new Token(null, null, score, 0f, 0f, 0);
+    }
+
+    @Test
+    public void testWidthFollowsSpread() {
+        AdaptiveActiveListFactory factory = new AdaptiveActiveListFactory(100, 1E-80, 5, 1E-10, 2.0, 0);
+        Assert.assertEquals("The first frame should use the maximal width.", 100, factory.getWidth());
+
+        // one clear best token
+        ActiveList list = factory.newInstance();
+        list.add(newToken(0f));
+        for (int i = 0; i < 20; i++) {
+            list.add(newToken(-1E7f));
+        }
+        list.purge();
+        Assert.assertEquals("A clear best token should narrow the beam to the minimum.", 5, factory.getWidth());
+
+        // many competing tokens
+        list = list.newInstance();
+        for (int i = 0; i < 30; i++) {
+            list.add(newToken(-i));
+        }
+        list.purge();
+        Assert.assertEquals("Competing tokens should widen the beam.", 60, factory.getWidth());
+        Assert.assertEquals("The purged frame should count as saturated.", 1, factory.getSaturatedFrames());
+        Assert.assertEquals("The purged frame should keep the beam width.", 5, list.size());
+        Assert.assertEquals("The best tokens should be kept.", 0f, list.getTokens().get(0).getScore(), 0f);
+
+        // never wider than the absolute beam width
+        list = list.newInstance();
+        for (int i = 0; i < 200; i++) {
+            list.add(newToken(-i));
+        }
+        list.purge();
+        Assert.assertEquals("The beam should not exceed the absolute beam width.", 100, factory.getWidth());
+        Assert.assertEquals("All frames should be counted.", 3, factory.getFrames());
+        Assert.assertEquals("The average width should be reported.", (100 + 5 + 60) / 3.0,
+                factory.getAverageWidth(), 1E-9);
+    }
+
+    @Test
+    public void testLatencyBudget() throws InterruptedException {
+        AdaptiveActiveListFactory factory = new AdaptiveActiveListFactory(100, 1E-80, 5, 1E-10, 2.0, 1);
+        factory.startUtterance(10);
+        Thread.sleep(5);
+
+        ActiveList list = factory.newInstance();
+        for (int i = 0; i < 30; i++) {
+            list.add(newToken(-i));
+        }
+        list.purge();
+        Assert.assertEquals("An exceeded budget should narrow the beam to the minimum.", 5, factory.getWidth());
+        Assert.assertEquals("The frame should be counted as limited by the budget.", 1,
+                factory.getBudgetLimitedFrames());
+
+        factory.startUtterance(10);
+        Assert.assertEquals("A new utterance should reset the beam.", 100, factory.getWidth());
+        Assert.assertEquals("A new utterance should reset the statistics.", 0, factory.getFrames());
+    }
+}
@@ -0,0 +1,172 @@
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import edu.cmu.sphinx.linguist.acoustic.Unit;
+import edu.cmu.sphinx.linguist.acoustic.UnitManager;
+import edu.cmu.sphinx.linguist.dictionary.Pronunciation;
+import edu.cmu.sphinx.linguist.dictionary.Word;
+import edu.cmu.sphinx.linguist.language.grammar.GrammarArc;
+import edu.cmu.sphinx.linguist.language.grammar.GrammarNode;
+import edu.cmu.sphinx.util.props.ConfigurationManager;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CompiledSearchGraphTest {
+
+    private final UnitManager unitManager = new UnitManager();
+
+    @Test
+    public void testWriteAndLoad() throws IOException {
+        GrammarNode initial = new GrammarNode(0, new Word[0][]);
+        GrammarNode go = createNode(1, "go", new String[]{"G", "OW"});
+        GrammarNode left = createNode(2, "left", new String[]{"L", "EH", "F", "T"}, new String[]{"L", "IH", "F", "T"});
+        GrammarNode end = new GrammarNode(3, new Word[0][]);
+        end.setFinalNode(true);
+        initial.add(go, -1.5f);
+        go.add(left, -0.5f);
+        go.add(end, -2f);
+        left.add(end, 0f);
+
+        List<GrammarNode> nodes = new ArrayList<GrammarNode>();
+        nodes.add(initial);
+        nodes.add(go);
+        nodes.add(left);
+        nodes.add(end);
+        Map<GrammarNode, int[]> nextUnits = new HashMap<GrammarNode, int[]>();
+        nextUnits.put(initial, new int[]{unit("G").getBaseID()});
+        nextUnits.put(go, new int[]{unit("L").getBaseID(), UnitManager.SILENCE.getBaseID()});
+        nextUnits.put(left, new int[]{UnitManager.SILENCE.getBaseID()});
+        nextUnits.put(end, new int[0]);
+
+        File file = File.createTempFile("graph", CompiledSearchGraph.EXTENSION);
+        try {
+            CompiledSearchGraph.write(file.getPath(), 42, initial, nodes, nextUnits);
+            // base IDs of another unit manager differ
+            UnitManager other = new UnitManager();
+            other.getUnit("AY");
+            CompiledSearchGraph graph = CompiledSearchGraph.load(file.getPath(), other, 42);
+
+            List<GrammarNode> loaded = graph.getGrammarNodes();
+            Assert.assertEquals("All nodes should be loaded.", 4, loaded.size());
+            Assert.assertSame("The initial node should be loaded.", loaded.get(0), graph.getInitialNode());
+            Assert.assertTrue("The initial node should be empty.", graph.getInitialNode().isEmpty());
+            Assert.assertTrue("The final node should be final.", loaded.get(3).isFinalNode());
+            Assert.assertEquals("Grammar IDs should be kept.", 2, loaded.get(2).getID());
+
+            Word word = loaded.get(2).getWord();
+            Assert.assertEquals("Words should be loaded.", "left", word.getSpelling());
+            Assert.assertEquals("All pronunciations should be loaded.", 2, word.getPronunciations().length);
+            Pronunciation pronunciation = word.getPronunciations()[1];
+            Assert.assertSame("Pronunciations should know their word.", word, pronunciation.getWord());
+            Assert.assertEquals("Units should be loaded.", "IH", pronunciation.getUnits()[1].getName());
+            Assert.assertSame("Units should be created by the unit manager.",
+                    other.getUnit("IH"), pronunciation.getUnits()[1]);
+
+            GrammarArc[] arcs = loaded.get(1).getSuccessors();
+            Assert.assertEquals("All arcs should be loaded.", 2, arcs.length);
+            Assert.assertSame("Arcs should lead to loaded nodes.", loaded.get(2), arcs[0].getGrammarNode());
+            Assert.assertEquals("Arc probabilities should be kept.", -0.5f, arcs[0].getProbability(), 0f);
+            Assert.assertSame("Arcs should lead to loaded nodes.", loaded.get(3), arcs[1].getGrammarNode());
+
+            int[] next = graph.getNextUnits().get(loaded.get(1));
+            Assert.assertEquals("Next units should be loaded.", 2, next.length);
+            Assert.assertEquals("Next units should use the base IDs of the unit manager.",
+                    other.getUnit("L").getBaseID(), next[0]);
+            Assert.assertEquals("Silence should follow.", UnitManager.SILENCE.getBaseID(), next[1]);
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOtherSources() throws IOException {
+        GrammarNode initial = new GrammarNode(0, new Word[0][]);
+        initial.setFinalNode(true);
+        Map<GrammarNode, int[]> nextUnits = new HashMap<GrammarNode, int[]>();
+        nextUnits.put(initial, new int[0]);
+
+        File file = File.createTempFile("graph", CompiledSearchGraph.EXTENSION);
+        try {
+            CompiledSearchGraph.write(file.getPath(), 42, initial, Collections.singletonList(initial), nextUnits);
+            CompiledSearchGraph.load(file.getPath(), unitManager, 43);
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testHashSources() throws IOException {
+        File sentences = File.createTempFile("sentences", ".txt");
+        File dictionary = File.createTempFile("words", ".dic");
+        File config = File.createTempFile("grammar", ".xml");
+        try {
+            FileUtils.writeStringToFile(sentences, "go left\n");
+            FileUtils.writeStringToFile(dictionary, "go G OW\nleft L EH F T\n");
+            FileUtils.writeStringToFile(config, "<config>\n"
+                    + "<property name=\"dictionaryfile\" value=\"" + dictionary.toURI() + "\"/>\n"
+                    + "<component name=\"grammar\" type=\"" + SentenceListGrammar.class.getName() + "\">\n"
+                    + "  <property name=\"sentenceFile\" value=\"" + sentences.getPath() + "\"/>\n"
+                    + "  <property name=\"dictionary\" value=\"dictionary\"/>\n"
+                    + "</component>\n"
+                    + "<component name=\"dictionary\" type=\"edu.cmu.sphinx.linguist.dictionary.FullDictionary\">\n"
+                    + "  <property name=\"dictionaryPath\" value=\"${dictionaryfile}\"/>\n"
+                    + "  <property name=\"fillerPath\" value=\"" + dictionary.toURI() + "\"/>\n"
+                    + "  <property name=\"unitManager\" value=\"unitManager\"/>\n"
+                    + "</component>\n"
+                    + "<component name=\"unitManager\" type=\"edu.cmu.sphinx.linguist.acoustic.UnitManager\"/>\n"
+                    + "</config>\n");
+            ConfigurationManager cm = new ConfigurationManager(config.toURI().toURL());
+            long hash = CompiledSearchGraph.hashSources(cm, "grammar");
+            Assert.assertFalse("The grammar should not be created.", cm.getPropertySheet("grammar").isInstanciated());
+            Assert.assertEquals("Equal sources should have the same hash.", hash,
+                    CompiledSearchGraph.hashSources(new ConfigurationManager(config.toURI().toURL()), "grammar"));
+
+            FileUtils.writeStringToFile(dictionary, "go G OW\nleft L EH F T\nright R AY T\n");
+            long changedDictionary = CompiledSearchGraph.hashSources(cm, "grammar");
+            Assert.assertNotEquals("A changed dictionary should change the hash.", hash, changedDictionary);
+
+            FileUtils.writeStringToFile(sentences, "go right\n");
+            Assert.assertNotEquals("Changed sentences should change the hash.", changedDictionary,
+                    CompiledSearchGraph.hashSources(cm, "grammar"));
+        } finally {
+            sentences.delete();
+            dictionary.delete();
+            config.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongFormat() throws IOException {
+        File file = File.createTempFile("graph", CompiledSearchGraph.EXTENSION);
+        try {
+            CompiledSearchGraph.load(file.getPath(), unitManager, 0);
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    private Unit unit(String name) {
+        return unitManager.getUnit(name);
+    }
+
+    private GrammarNode createNode(int id, String spelling, String[]... pronunciations) {
+        Pronunciation[] p = new Pronunciation[pronunciations.length];
+        for (int i = 0; i < pronunciations.length; i++) {
+            List<Unit> units = new ArrayList<Unit>();
+            for (String name : pronunciations[i]) {
+                units.add(unit(name));
+            }
+            p[i] = new Pronunciation(units) {
+            };
+        }
+        return new GrammarNode(id, new Word[][]{{new Word(spelling, p, false)}});
+    }
+}
@@ -0,0 +1,112 @@
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import edu.cmu.sphinx.linguist.SearchState;
+import edu.cmu.sphinx.linguist.acoustic.Unit;
+import edu.cmu.sphinx.linguist.acoustic.UnitManager;
+import edu.cmu.sphinx.linguist.dictionary.Pronunciation;
+import edu.cmu.sphinx.linguist.dictionary.Word;
+import edu.cmu.sphinx.linguist.language.grammar.Grammar;
+import edu.cmu.sphinx.linguist.language.grammar.GrammarNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class GrammarSwapTest {
+
+    private final UnitManager unitManager = new UnitManager();
+
+    @Test
+    public void testSwapBetweenRecognitions() {
+        Grammar first = createGrammar("go", "G", "OW");
+        Grammar second = createGrammar("stop", "S", "T", "AA", "P");
+        OurDynamicFlatLinguist linguist = new OurDynamicFlatLinguist(null, first, 1, 1, 1, 1, 1f, false, 1, 1, null);
+
+        linguist.swapGrammar(first);
+        linguist.startRecognition();
+        Assert.assertEquals("The first grammar should be installed.", "go", getFirstWord(linguist));
+
+        linguist.swapGrammar(second);
+        Assert.assertEquals("The grammar should not change while decoding.", "go", getFirstWord(linguist));
+        Assert.assertSame("The grammar should not change while decoding.", first, linguist.getGrammar());
+
+        linguist.startRecognition();
+        Assert.assertEquals("The second grammar should be installed.", "stop", getFirstWord(linguist));
+        Assert.assertSame("The second grammar should be used.", second, linguist.getGrammar());
+
+        linguist.startRecognition();
+        Assert.assertEquals("The grammar should be installed once.", "stop", getFirstWord(linguist));
+    }
+
+    @Test
+    public void testSharedCompilation() {
+        Grammar grammar = createGrammar("stop", "S", "T", "AA", "P");
+        OurDynamicFlatLinguist.SwappedGrammar swapped = OurDynamicFlatLinguist.compileSwappedGrammar(grammar);
+        for (int i = 0; i < 2; i++) {
+            OurDynamicFlatLinguist linguist = new OurDynamicFlatLinguist(null, createGrammar("go", "G", "OW"),
+                    1, 1, 1, 1, 1f, false, 1, 1, null);
+            linguist.swapGrammar(swapped);
+            linguist.startRecognition();
+            Assert.assertSame("Every linguist should use the compiled grammar.", grammar, linguist.getGrammar());
+            Assert.assertEquals("Every linguist should decode the compiled grammar.", "stop", getFirstWord(linguist));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnallocatedGrammar() {
+        Grammar grammar = new Grammar() {
+            @Override
+            protected GrammarNode createGrammar() {
+                return null;
+            }
+        };
+        new OurDynamicFlatLinguist().swapGrammar(grammar);
+    }
+
+    private static String getFirstWord(OurDynamicFlatLinguist linguist) {
+        SearchState initial = linguist.getSearchGraph().getInitialState();
+        OurDynamicFlatLinguist.GrammarState start =
+                (OurDynamicFlatLinguist.GrammarState) initial.getSuccessors()[0].getState();
+        return start.getGrammarNode().getSuccessors()[0].getGrammarNode().getWord().getSpelling();
+    }
+
+    // initial node, word node and final node
+    private Grammar createGrammar(String spelling, String... unitNames) {
+        List<Unit> units = new ArrayList<Unit>();
+        for (String name : unitNames) {
+            units.add(unitManager.getUnit(name));
+        }
+        Pronunciation pronunciation = new Pronunciation(units) {
+        };
+        final GrammarNode initial = new GrammarNode(0, new Word[0][]);
+        GrammarNode word = new GrammarNode(1, new Word[][]{{new Word(spelling, new Pronunciation[]{pronunciation}, false)}});
+        GrammarNode end = new GrammarNode(2, new Word[0][]);
+        end.setFinalNode(true);
+        initial.add(word, 0f);
+        word.add(end, 0f);
+
+        final Set<GrammarNode> nodes = new LinkedHashSet<GrammarNode>();
+        nodes.add(initial);
+        nodes.add(word);
+        nodes.add(end);
+        return new Grammar() {
+            @Override
+            protected GrammarNode createGrammar() {
+                return initial;
+            }
+
+            @Override
+            public GrammarNode getInitialNode() {
+                return initial;
+            }
+
+            @Override
+            public Set<GrammarNode> getGrammarNodes() {
+                return nodes;
+            }
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import edu.cmu.sphinx.linguist.acoustic.UnitManager;
+import edu.cmu.sphinx.linguist.dictionary.FullDictionary;
+import edu.cmu.sphinx.linguist.language.grammar.GrammarArc;
+import edu.cmu.sphinx.linguist.language.grammar.GrammarNode;
+import edu.cmu.sphinx.util.LogMath;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SentenceListGrammarTest {
+
+    private File dictionaryFile;
+    private File fillerFile;
+
+    @Test
+    public void testPrefixTree() throws IOException {
+        try {
+            FullDictionary dictionary = createDictionary();
+            SentenceListGrammar grammar = new SentenceListGrammar(
+                    Arrays.asList("go left", "go right", " go ", "stop", "fly away", ""), dictionary);
+            grammar.allocate();
+
+            Assert.assertEquals("Words of the same prefix should share a node.", 6, grammar.getGrammarNodes().size());
+            Map<String, GrammarArc> first = getSuccessors(grammar.getInitialNode());
+            Assert.assertEquals("Sentences with unknown words should be skipped.", 2, first.size());
+            LogMath logMath = LogMath.getInstance();
+            Assert.assertEquals("Arcs should be weighted by the number of sentences.", 0.75,
+                    logMath.logToLinear(first.get("go").getProbability()), 1E-3);
+
+            Map<String, GrammarArc> second = getSuccessors(first.get("go").getGrammarNode());
+            Assert.assertEquals("Sentences should continue or end.", 3, second.size());
+            Assert.assertTrue("Sentences should end in the final node.", second.get(null).getGrammarNode().isFinalNode());
+            Assert.assertSame("All sentences should end in the same node.", second.get(null).getGrammarNode(),
+                    getSuccessors(first.get("stop").getGrammarNode()).get(null).getGrammarNode());
+            Assert.assertEquals("Every sentence should have the same probability.", 0.25,
+                    logMath.logToLinear(first.get("go").getProbability() + second.get("left").getProbability()), 1E-3);
+        } finally {
+            dictionaryFile.delete();
+            fillerFile.delete();
+        }
+    }
+
+    @Test
+    public void testNormalizedWords() throws IOException {
+        try {
+            SentenceListGrammar grammar = new SentenceListGrammar(
+                    Arrays.asList("Go left", "go  Right!", "GO LEFT."), createDictionary());
+            grammar.allocate();
+
+            Map<String, GrammarArc> first = getSuccessors(grammar.getInitialNode());
+            Assert.assertEquals("Words differing in case should share a node.", 1, first.size());
+            Map<String, GrammarArc> second = getSuccessors(first.get("go").getGrammarNode());
+            Assert.assertEquals("Special characters should be ignored.", 2, second.size());
+            Assert.assertEquals("Equal sentences should add up.", 2 / 3.0,
+                    LogMath.getInstance().logToLinear(second.get("left").getProbability()), 1E-3);
+        } finally {
+            dictionaryFile.delete();
+            fillerFile.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoKnownSentences() throws IOException {
+        try {
+            new SentenceListGrammar(Arrays.asList("fly away"), createDictionary()).allocate();
+        } finally {
+            dictionaryFile.delete();
+            fillerFile.delete();
+        }
+    }
+
+    private FullDictionary createDictionary() throws IOException {
+        dictionaryFile = File.createTempFile("words", ".dic");
+        fillerFile = File.createTempFile("filler", ".dic");
+        FileUtils.writeStringToFile(dictionaryFile, "go G OW\nleft L EH F T\nright R AY T\nstop S T AA P\n");
+        FileUtils.writeStringToFile(fillerFile, "<s> SIL\n</s> SIL\n<sil> SIL\n");
+        return new FullDictionary(dictionaryFile.toURI().toURL(), fillerFile.toURI().toURL(),
+                null, false, null, false, false, new UnitManager());
+    }
+
+    // successors by word, null for the final node
+    private static Map<String, GrammarArc> getSuccessors(GrammarNode node) {
+        Map<String, GrammarArc> successors = new HashMap<String, GrammarArc>();
+        for (GrammarArc arc : node.getSuccessors()) {
+            GrammarNode next = arc.getGrammarNode();
+            successors.put(next.isEmpty() ? null : next.getWord().getSpelling(), arc);
+        }
+        return successors;
+    }
+}
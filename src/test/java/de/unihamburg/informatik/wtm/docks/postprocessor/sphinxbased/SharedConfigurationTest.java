@@ -0,0 +1,64 @@
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import edu.cmu.sphinx.util.props.Configurable;
+import edu.cmu.sphinx.util.props.ConfigurationManager;
+import edu.cmu.sphinx.util.props.PropertyException;
+import edu.cmu.sphinx.util.props.PropertySheet;
+import edu.cmu.sphinx.util.props.S4Component;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+public class SharedConfigurationTest {
+
+    public static class Model implements Configurable {
+        @Override
+        public void newProperties(PropertySheet ps) throws PropertyException {
+        }
+    }
+
+    public static class Search implements Configurable {
+
+        @S4Component(type = Model.class)
+        public static final String PROP_MODEL = "model";
+
+        Model model;
+
+        @Override
+        public void newProperties(PropertySheet ps) throws PropertyException {
+            model = (Model) ps.getComponent(PROP_MODEL);
+        }
+    }
+
+    @Test
+    public void testCopy() throws IOException {
+        File config = File.createTempFile("shared", ".xml");
+        try {
+            FileUtils.writeStringToFile(config, "<config>\n"
+                    + "<property name=\"modelName\" value=\"model\"/>\n"
+                    + "<component name=\"search\" type=\"" + Search.class.getName() + "\">\n"
+                    + "  <property name=\"model\" value=\"${modelName}\"/>\n"
+                    + "</component>\n"
+                    + "<component name=\"model\" type=\"" + Model.class.getName() + "\"/>\n"
+                    + "</config>\n");
+            ConfigurationManager original = new ConfigurationManager(config.toURI().toURL());
+            ConfigurationManager copy = SharedConfiguration.copy(original,
+                    Collections.<Class<?>>singletonList(Model.class));
+
+            Search originalSearch = (Search) original.lookup("search");
+            Search copiedSearch = (Search) copy.lookup("search");
+            Assert.assertNotSame("Other components should be created per copy.", originalSearch, copiedSearch);
+            Assert.assertSame("Shared components should be used by the copy.", originalSearch.model, copiedSearch.model);
+
+            ConfigurationManager separate = SharedConfiguration.copy(original, Collections.<Class<?>>emptyList());
+            Assert.assertNotSame("Components should only be shared if requested.", originalSearch.model,
+                    ((Search) separate.lookup("search")).model);
+        } finally {
+            config.delete();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import edu.cmu.sphinx.linguist.acoustic.Unit;
+import edu.cmu.sphinx.linguist.acoustic.UnitManager;
+import edu.cmu.sphinx.linguist.dictionary.Pronunciation;
+import edu.cmu.sphinx.linguist.dictionary.Word;
+import edu.cmu.sphinx.linguist.language.grammar.GrammarNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class StateIdsTest {
+
+    private final UnitManager unitManager = new UnitManager();
+
+    @Test
+    public void testIdsAreUnique() {
+        List<GrammarNode> nodes = new ArrayList<GrammarNode>();
+        nodes.add(new GrammarNode(0, new Word[0][]));
+        nodes.add(createNode(1, "go", new String[]{"G", "OW"}));
+        nodes.add(createNode(2, "left", new String[]{"L", "EH", "F", "T"}, new String[]{"L", "IH", "F", "T"}));
+        nodes.add(createNode(3, "right", new String[]{"R", "AY", "T"}));
+
+        OurDynamicFlatLinguist.StateIds ids = new OurDynamicFlatLinguist.StateIds(nodes);
+        Assert.assertEquals("Every node should get an ID.", 4, ids.getNumberOfNodes());
+        Assert.assertEquals("Every pronunciation should get an ID.", 4, ids.getNumberOfPronunciations());
+        Assert.assertEquals("Every unit should get an ID.", 13, ids.getNumberOfUnits());
+
+        Set<Integer> pronunciationIds = new HashSet<Integer>();
+        Set<Integer> unitIds = new HashSet<Integer>();
+        for (GrammarNode node : nodes) {
+            int nodeId = ids.getNodeId(node);
+            Assert.assertEquals("Node IDs should be consecutive.", nodes.indexOf(node), nodeId);
+            if (node.isEmpty()) {
+                continue;
+            }
+            Pronunciation[] pronunciations = node.getWord().getPronunciations();
+            for (int p = 0; p < pronunciations.length; p++) {
+                int pronunciationId = ids.getPronunciationId(nodeId, p);
+                Assert.assertTrue("Pronunciation IDs should be unique.", pronunciationIds.add(pronunciationId));
+                for (int u = 0; u < pronunciations[p].getUnits().length; u++) {
+                    int unitId = ids.getUnitId(pronunciationId, u);
+                    Assert.assertTrue("Unit IDs should be unique.", unitIds.add(unitId));
+                    Assert.assertTrue("Unit IDs should be compact.", unitId < ids.getNumberOfUnits());
+                }
+            }
+        }
+        Assert.assertEquals("All units should be numbered.", 13, unitIds.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownNode() {
+        OurDynamicFlatLinguist.StateIds ids = new OurDynamicFlatLinguist.StateIds(
+                Arrays.asList(createNode(0, "go", new String[]{"G", "OW"})));
+        ids.getNodeId(createNode(1, "go", new String[]{"G", "OW"}));
+    }
+
+    private GrammarNode createNode(int id, String spelling, String[]... pronunciations) {
+        Pronunciation[] p = new Pronunciation[pronunciations.length];
+        for (int i = 0; i < pronunciations.length; i++) {
+            List<Unit> units = new ArrayList<Unit>();
+            for (String name : pronunciations[i]) {
+                units.add(unitManager.getUnit(name));
+            }
+            p[i] = new Pronunciation(units) {
+            };
+        }
+        return new GrammarNode(id, new Word[][]{{new Word(spelling, p, false)}});
+    }
+}
@@ -0,0 +1,69 @@
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import edu.cmu.sphinx.linguist.SearchState;
+import edu.cmu.sphinx.linguist.SearchStateArc;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+public class SuccessorCacheTest {
+
+    private static final SearchStateArc[] ARCS = new SearchStateArc[0];
+
+    private static SearchState newState() {
+        return (SearchState) Proxy.newProxyInstance(SearchState.class.getClassLoader(),
+                new Class<?>[]{SearchState.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("equals")) {
+                            return proxy == args[0];
+                        }
+                        if (method.getName().equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void testFifo() {
+        SuccessorCache cache = new SuccessorCache(2, SuccessorCache.Eviction.FIFO);
+        SearchState a = newState();
+        SearchState b = newState();
+        SearchState c = newState();
+        cache.put(a, ARCS);
+        cache.put(b, ARCS);
+        Assert.assertTrue("Cache should be full.", cache.isFull());
+        Assert.assertSame("Successors should be cached.", ARCS, cache.get(a));
+        cache.put(c, ARCS);
+
+        Assert.assertEquals("Cache should not grow beyond its limit.", 2, cache.size());
+        Assert.assertNull("First state should be evicted.", cache.get(a));
+        Assert.assertNotNull("Later states should be kept.", cache.get(b));
+        Assert.assertEquals("Eviction should be counted.", 1, cache.getEvictions());
+        Assert.assertEquals("Hits should be counted.", 2, cache.getHits());
+        Assert.assertEquals("Misses should be counted.", 1, cache.getMisses());
+    }
+
+    @Test
+    public void testLru() {
+        SuccessorCache cache = new SuccessorCache(2, SuccessorCache.Eviction.LRU);
+        SearchState a = newState();
+        SearchState b = newState();
+        cache.put(a, ARCS);
+        cache.put(b, ARCS);
+        cache.get(a);
+        cache.put(newState(), ARCS);
+
+        Assert.assertEquals("Cache should not grow beyond its limit.", 2, cache.size());
+        Assert.assertNotNull("Recently used state should be kept.", cache.get(a));
+        Assert.assertNull("Least recently used state should be evicted.", cache.get(b));
+        cache.clear();
+        Assert.assertEquals("Cache should be empty after clearing.", 0, cache.size());
+        Assert.assertFalse("Cache should not be full after clearing.", cache.isFull());
+    }
+}
@@ -0,0 +1,43 @@
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import de.unihamburg.informatik.wtm.docks.data.WordLattice;
+import edu.cmu.sphinx.result.Lattice;
+import edu.cmu.sphinx.result.Node;
+import edu.cmu.sphinx.util.LogMath;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class WordLatticesTest {
+
+    @Test
+    public void testFromLattice() {
+        LogMath logMath = LogMath.getInstance();
+        Lattice lattice = new Lattice();
+        Node start = lattice.addNode("0", "<s>", 0, 0);
+        Node go = lattice.addNode("1", "go", 1, 10);
+        Node no = lattice.addNode("2", "no", 1, 10);
+        Node end = lattice.addNode("3", "</s>", 11, 11);
+        lattice.addEdge(start, go, logMath.lnToLog(-1), 0);
+        lattice.addEdge(start, no, logMath.lnToLog(-2), 0);
+        lattice.addEdge(go, end, 0, 0);
+        lattice.addEdge(no, end, 0, 0);
+        lattice.setInitialNode(start);
+        lattice.setTerminalNode(end);
+
+        WordLattice converted = WordLattices.fromLattice(lattice);
+        Assert.assertEquals("All nodes should be converted.", 4, converted.getNumberOfNodes());
+        Assert.assertEquals("All edges should be converted.", 4, converted.getNumberOfEdges());
+        Assert.assertEquals("Sentence boundaries should not be part of hypotheses.",
+                Arrays.asList("go", "no"), converted.getNbest(5, 1));
+
+        double expected = Math.exp(-1) / (Math.exp(-1) + Math.exp(-2));
+        for (int node = 0; node < converted.getNumberOfNodes(); node++) {
+            if ("go".equals(converted.getWord(node))) {
+                Assert.assertEquals("Scores should be converted to natural logarithms.", expected,
+                        converted.getPosterior(node), 1E-3);
+            }
+        }
+    }
+}
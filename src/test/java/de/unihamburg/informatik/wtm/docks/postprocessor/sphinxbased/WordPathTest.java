@@ -0,0 +1,114 @@
+package de.unihamburg.informatik.wtm.docks.postprocessor.sphinxbased;
+
+import edu.cmu.sphinx.decoder.search.Token;
+import edu.cmu.sphinx.linguist.SearchState;
+import edu.cmu.sphinx.linguist.WordSearchState;
+import edu.cmu.sphinx.linguist.acoustic.Unit;
+import edu.cmu.sphinx.linguist.acoustic.UnitManager;
+import edu.cmu.sphinx.linguist.dictionary.Pronunciation;
+import edu.cmu.sphinx.linguist.dictionary.Word;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class WordPathTest {
+
+    private final UnitManager unitManager = new UnitManager();
+
+    @Test
+    public void testRead() {
+        Token token = new Token(null, 0);
+        token = newToken(token, word("<sil>", true, "SIL"), 0f);
+        token = newToken(token, word("go", false, "G", "OW"), 0f);
+        token = newToken(token, unitState(), 0f);
+        token = newToken(token, word("left", false, "L", "EH", "F", "T"), 0f);
+
+        WordPath path = new WordPath().read(token);
+        Assert.assertEquals("Fillers should be skipped.", 2, path.size());
+        Assert.assertEquals("Words should be in order.", "go", path.get(0).getWord().getSpelling());
+        Assert.assertEquals("Words should match Sphinx.", token.getWordPathNoFiller(), path.getWords());
+        Assert.assertEquals("Units of all words should be read.", "G OW L EH F T ", path.getUnits());
+        Assert.assertEquals("An empty path should have no words.", "", path.read(null).getWords());
+    }
+
+    @Test
+    public void testLongPath() {
+        Token token = new Token(null, 0);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            token = newToken(token, word("w" + i, false, "W"), 0f);
+            expected.append(i == 0 ? "" : " ").append("w").append(i);
+        }
+        Assert.assertEquals("Long paths should be read completely.", expected.toString(),
+                new WordPath().read(token).getWords());
+    }
+
+    @Test
+    public void testGetBest() {
+        Token first = newToken(new Token(null, 0), word("go", false, "G", "OW"), -10f);
+        Token second = newToken(new Token(null, 0), word("stop", false, "S", "T", "AA", "P"), -2f);
+        List<Token> tokens = new ArrayList<Token>(Arrays.asList(first, second));
+        Assert.assertSame("The token with the highest score should be the best.", second, WordPath.getBest(tokens));
+        Assert.assertNull("There should be no best token of no tokens.",
+                WordPath.getBest(new ArrayList<Token>()));
+    }
+
+    @Test
+    public void testJoin() {
+        Assert.assertEquals("Phonemes should be followed by spaces.", "G OW ",
+                new WordPath().join(new String[]{"G", "OW"}));
+    }
+
+    private static Token newToken(Token predecessor, SearchState state, float score) {
+        return new Token(predecessor, state, score, 0f, 0f, 0);
+    }
+
+    private SearchState word(String spelling, boolean filler, String... unitNames) {
+        List<Unit> units = new ArrayList<Unit>();
+        for (String name : unitNames) {
+            units.add(unitManager.getUnit(name, filler));
+        }
+        final Pronunciation pronunciation = new Pronunciation(units) {
+        };
+        setWord(pronunciation, new Word(spelling, new Pronunciation[]{pronunciation}, filler));
+        return (SearchState) Proxy.newProxyInstance(WordSearchState.class.getClassLoader(),
+                new Class<?>[]{WordSearchState.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getPronunciation")) {
+                            return pronunciation;
+                        }
+                        if (method.getName().equals("isWordStart")) {
+                            return true;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static SearchState unitState() {
+        return (SearchState) Proxy.newProxyInstance(SearchState.class.getClassLoader(),
+                new Class<?>[]{SearchState.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                });
+    }
+
+    private static void setWord(Pronunciation pronunciation, Word word) {
+        try {
+            Method m = Pronunciation.class.getDeclaredMethod("setWord", Word.class);
+            m.setAccessible(true);
+            m.invoke(pronunciation, word);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package de.unihamburg.informatik.wtm.docks.utils;
+
+import de.unihamburg.informatik.wtm.docks.data.Result;
+import de.unihamburg.informatik.wtm.docks.postprocessor.PostProcessor;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StartupTest {
+
+    private static class CountingPostProcessor implements PostProcessor {
+
+        final AtomicInteger calls = new AtomicInteger();
+        volatile Result first;
+
+        @Override
+        public Result recognizeFromResult(Result r) {
+            if (calls.incrementAndGet() == 1) {
+                first = r;
+            }
+            return r;
+        }
+
+        @Override
+        public String getName() {
+            return "counting";
+        }
+    }
+
+    @Test
+    public void testLoadAndWarmUp() throws InterruptedException {
+        List<Result> corpus = new ArrayList<Result>();
+        for (String hypothesis : new String[]{"go left", "go right"}) {
+            Result r = new Result();
+            r.addResult(hypothesis);
+            corpus.add(r);
+        }
+
+        Startup startup = new Startup(2);
+        startup.setWarmUpCorpus(corpus, 3);
+        Future<CountingPostProcessor> postProcessor = startup.loadPostProcessor("post processor",
+                new Callable<CountingPostProcessor>() {
+                    @Override
+                    public CountingPostProcessor call() {
+                        return new CountingPostProcessor();
+                    }
+                });
+        Future<String> resource = startup.load("resource", new Callable<String>() {
+            @Override
+            public String call() {
+                return "resource";
+            }
+        });
+
+        Assert.assertTrue("All components should become ready.", startup.awaitReady(10, TimeUnit.SECONDS));
+        Assert.assertEquals("Post processor should run the corpus for every iteration.",
+                6, Startup.get(postProcessor).calls.get());
+        Assert.assertEquals("Resource should be returned.", "resource", Startup.get(resource));
+        Assert.assertEquals("Status should be reported.", Startup.Status.READY, startup.getStatus("resource"));
+        startup.shutdown();
+    }
+
+    @Test
+    public void testWarmUpCorpusFile() throws IOException, InterruptedException {
+        File corpus = File.createTempFile("warmup", ".txt");
+        try {
+            FileUtils.writeStringToFile(corpus, "go left|go right\n\nstop\n");
+            Startup startup = new Startup(1);
+            startup.setWarmUpCorpus(corpus.getPath(), 2);
+            Future<CountingPostProcessor> postProcessor = startup.loadPostProcessor("post processor",
+                    new Callable<CountingPostProcessor>() {
+                        @Override
+                        public CountingPostProcessor call() {
+                            return new CountingPostProcessor();
+                        }
+                    });
+
+            Assert.assertTrue("The post processor should become ready.", startup.awaitReady(10, TimeUnit.SECONDS));
+            Assert.assertEquals("Every non-empty line should be one result.", 4, Startup.get(postProcessor).calls.get());
+            Assert.assertEquals("Alternatives should be part of the same result.",
+                    Arrays.asList("go left", "go right"), Startup.get(postProcessor).first.getResultList());
+            startup.shutdown();
+        } finally {
+            corpus.delete();
+        }
+    }
+
+    @Test
+    public void testMissingWarmUpCorpusFile() throws IOException, InterruptedException {
+        Startup startup = new Startup(1);
+        startup.setWarmUpCorpus("missing.warmup.txt", 2);
+        Future<CountingPostProcessor> postProcessor = startup.loadPostProcessor("post processor",
+                new Callable<CountingPostProcessor>() {
+                    @Override
+                    public CountingPostProcessor call() {
+                        return new CountingPostProcessor();
+                    }
+                });
+
+        Assert.assertTrue("The post processor should become ready.", startup.awaitReady(10, TimeUnit.SECONDS));
+        Assert.assertEquals("Post processors should not be warmed up without a corpus.",
+                0, Startup.get(postProcessor).calls.get());
+        startup.shutdown();
+    }
+
+    @Test
+    public void testFailure() throws InterruptedException {
+        Startup startup = new Startup(1);
+        startup.load("broken", new Callable<String>() {
+            @Override
+            public String call() {
+                throw new IllegalStateException("missing model");
+            }
+        });
+
+        Assert.assertFalse("Startup should not be ready if a component failed.", startup.awaitReady(10, TimeUnit.SECONDS));
+        Assert.assertEquals("Failure should be reported.", Startup.Status.FAILED, startup.getStatus("broken"));
+        startup.shutdown();
+    }
+}
@@ -0,0 +1,61 @@
+package de.unihamburg.informatik.wtm.docks.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class TextNormalizerTest {
+
+    private static final String[] SAMPLES = new String[]{
+            "", " ", "   ", "@", "@ @", "Yes", " Yes", "  Yes  ", "I'm done.", "go to the kitchen ",
+            "Hello,   World!", "a;b ; c", ";", " ;", "Straße 42", "\tTab\tseparated", "ÄÖÜ äöü", "x\r", "A  B  C"
+    };
+
+    private static String regexClean(String s, boolean keepSemicolons) {
+        s = s.replaceAll(keepSemicolons ? "[^a-zA-Z 0-9;]" : "[^a-zA-Z 0-9]", "");
+        s = s.replaceAll(" +", " ");
+        if (!s.equals("") && s.charAt(0) == ' ')
+            s = s.substring(1);
+        return s;
+    }
+
+    private static String[] regexWords(String s) {
+        s = s.replaceAll("[^a-zA-Z 0-9]", "");
+        s = s.replaceAll(" +", " ");
+        if ("".equals(s))
+            return null;
+        if (s.charAt(0) == ' ')
+            s = s.substring(1);
+        return s.toLowerCase().split(" ");
+    }
+
+    private static void check(String s) {
+        Assert.assertEquals("Cleaning should match the regex: '" + s + "'", regexClean(s, false), TextNormalizer.clean(s));
+        Assert.assertEquals("Cleaning with semicolons should match the regex: '" + s + "'",
+                regexClean(s, true), TextNormalizer.clean(s, true));
+        Assert.assertEquals("Words should match the regex: '" + s + "'",
+                Arrays.toString(regexWords(s)), Arrays.toString(TextNormalizer.toWords(s)));
+    }
+
+    @Test
+    public void testSamples() {
+        for (String s : SAMPLES) {
+            check(s);
+        }
+    }
+
+    @Test
+    public void testRandom() {
+        String alphabet = "aZ09 ;.,'@-\tä";
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            char[] chars = new char[random.nextInt(12)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = alphabet.charAt(random.nextInt(alphabet.length()));
+            }
+            check(new String(chars));
+        }
+    }
+}